@@ -0,0 +1,172 @@
+import java.util.*;
+import nz.sodium.*;
+import nz.sodium.time.*;
+import nz.sodium.time.Timer;
+
+/**
+ * Base class for GPS sources. Events either come from I/O through {@link #publish}, or
+ * are played back on the source's timer system through {@link #playback}.
+ * Each tracker's events are delivered in their own transactions, so the merged stream
+ * never has to combine simultaneous events.
+ */
+public abstract class AbstractGpsSource implements GpsSource {
+
+    protected final GpsTimerSystem timers;
+    private List<Playback> playbacks = new ArrayList<Playback>();
+    private Stream<GpsEvent>[] streams;
+    private Stream<GpsEvent> merged;
+    private StreamSink<GpsEvent>[] sinks;
+    private String[] names;                         // Tracker names, built once
+
+    /**
+     * Creates a source with no trackers.
+     * @param timers The timer system to schedule and timestamp events on.
+     */
+    protected AbstractGpsSource(GpsTimerSystem timers){
+        this.timers = timers;
+        setStreams(newArray(0));
+    }
+
+    /**
+     * Creates one sink per tracker for {@link #publish}, replacing any existing streams.
+     * @param trackers The number of trackers.
+     */
+    protected void createStreams(int trackers){
+        StreamSink<GpsEvent>[] sinks = newSinkArray(trackers);
+        String[] names = new String[trackers];
+        for (int i = 0; i < trackers; i++) {
+            sinks[i] = new StreamSink<GpsEvent>();
+            names[i] = trackerName(i);
+        }
+        this.names = names;
+        this.sinks = sinks;
+        setStreams(sinks.clone());
+    }
+
+    /**
+     * Uses the given per-tracker streams, replacing any existing streams.
+     */
+    protected void setStreams(Stream<GpsEvent>[] streams){
+        this.streams = streams;
+        this.merged = Stream.orElse(Arrays.asList(streams));
+    }
+
+    /**
+     * Returns the name of the tracker with the given index.
+     */
+    protected static String trackerName(int id){
+        return "Tracker"+id;
+    }
+
+    /**
+     * Publishes a fix for the given tracker.
+     * @param time The time of the fix in milliseconds since the epoch.
+     */
+    protected void publish(int id, double latitude, double longitude, double altitude, long time){
+        this.sinks[id].send(new GpsEvent(this.names[id], latitude, longitude, altitude, time));
+    }
+
+    /**
+     * Creates a stream that fires at the start time, and after that at whatever time each
+     * firing asks for, until the source is closed. Each firing is scheduled directly on
+     * the timer system and sent on a sink, so it costs no more than a published event.
+     * @param start The time of the first event.
+     * @param step Given the firing time, returns the event for that time, or null for none,
+     *    and the time of the next firing, or null to stop. It is called exactly once per firing.
+     * @return The stream of played back events.
+     */
+    protected Stream<GpsEvent> playback(long start, Lambda1<Long, Tuple2<GpsEvent, Long>> step){
+        Playback p = new Playback(step);
+        synchronized (this) {
+            this.playbacks.add(p);
+        }
+        p.scheduleAt(start);
+        return p.sink;
+    }
+
+    /**
+     * Cancels every playback started so far. Later playbacks are unaffected.
+     */
+    protected void stopPlayback(){
+        List<Playback> stopping;
+        synchronized (this) {
+            stopping = this.playbacks;
+            this.playbacks = new ArrayList<Playback>();
+        }
+        for (Playback p : stopping) {
+            p.stop();
+        }
+    }
+    /**
+     * Returns the number of trackers.
+     */
+    public int getTrackerCount(){
+        return this.streams.length;
+    }
+
+    public Stream<GpsEvent>[] getEventStreams(){
+        return this.streams.clone();
+    }
+
+    public Stream<GpsEvent> getMergedStream(){
+        return this.merged;
+    }
+
+    public TimerSystem<Long> getTimerSystem(){
+        return this.timers;
+    }
+
+    /**
+     * One played back stream, which reschedules itself after each firing.
+     */
+    private final class Playback implements Runnable {
+
+        final StreamSink<GpsEvent> sink = new StreamSink<GpsEvent>();
+        private final Lambda1<Long, Tuple2<GpsEvent, Long>> step;
+        private long next;
+        private Timer timer;
+        private volatile boolean stopped;
+
+        Playback(Lambda1<Long, Tuple2<GpsEvent, Long>> step){
+            this.step = step;
+        }
+
+        synchronized void scheduleAt(long t){
+            if (!this.stopped) {
+                this.next = t;
+                this.timer = timers.schedule(t, this);
+            }
+        }
+
+        synchronized void stop(){
+            this.stopped = true;
+            if (this.timer != null) {
+                this.timer.cancel();
+                this.timer = null;
+            }
+        }
+
+        public void run(){
+            if (this.stopped) {
+                return;
+            }
+            Tuple2<GpsEvent, Long> s = this.step.apply(this.next);
+            if (s.a != null) {
+                this.sink.send(s.a);
+            }
+            if (s.b != null) {
+                scheduleAt(s.b);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    protected static Stream<GpsEvent>[] newArray(int n){
+        return (Stream<GpsEvent>[]) new Stream[n];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static StreamSink<GpsEvent>[] newSinkArray(int n){
+        return (StreamSink<GpsEvent>[]) new StreamSink[n];
+    }
+}
@@ -0,0 +1,245 @@
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import nz.sodium.Listener;
+import nz.sodium.StreamSink;
+import nz.sodium.Tuple2;
+import swidgets.STextField;
+
+/**
+ * Guards the allocation cost of the event path. Each test replays a fixed workload on the
+ * current thread and checks the bytes it allocated per event against a budget, so a change
+ * that starts allocating on the hot path fails the build. Workloads run once first so the
+ * measurement covers steady state rather than class loading and warm-up.
+ *
+ * Paths that must allocate are judged against a baseline measured in the same run, such as
+ * the objects the path is expected to create or a bare {@link StreamSink#send}, so the
+ * budgets hold whatever the object layout and however many timer systems exist.
+ */
+public class AllocationBudget_Test {
+
+    private static com.sun.management.ThreadMXBean threads;
+    private static GpsTrace[] traces;
+    private static Object retained;             // Keeps baseline allocations from being optimised away
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        traces = GpsTrace.load("gps.dat");
+    }
+
+    /**
+     * Runs a workload twice and returns the bytes allocated per event on the second run.
+     */
+    private static double bytesPerEvent(Runnable workload, long events){
+        workload.run();
+        long id = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(id);
+        workload.run();
+        return (double) (threads.getThreadAllocatedBytes(id) - before) / events;
+    }
+
+    /**
+     * Fails if the bytes allocated per event exceed the budget, naming the workload.
+     */
+    private static void assertBudget(String name, double bytes, double budget){
+        assertTrue(name+" allocated "+round(bytes)+" bytes/event, over its budget of "+budget,
+                   bytes <= budget);
+    }
+
+    /**
+     * Fails if the bytes allocated per event exceed a multiple of a baseline, naming both.
+     */
+    private static void assertRelative(String name, double bytes, String baselineName, double baseline, double factor){
+        assertTrue(name+" allocated "+round(bytes)+" bytes/event, over "+factor+" times "+baselineName+" at "+round(baseline),
+                   bytes <= factor * baseline);
+    }
+
+    private static double round(double bytes){
+        return Math.round(bytes * 10) / 10.0;
+    }
+
+    @Test
+    public void testTraceCursor() {
+        // Test that producing the next fix of a trace allocates only the event, the tuple and
+        // the boxed time of the next firing
+        TraceGpsSource.GpsInput input = new TraceGpsSource.GpsInput(0, traces[0]);
+        final Long time = 0L;
+        final int events = 100000;
+        double bytes = bytesPerEvent(() -> {
+            for (int i = 0; i < events; i++) {
+                input.apply(time);
+            }
+        }, events);
+        double objects = bytesPerEvent(() -> {
+            for (int i = 0; i < events; i++) {
+                retained = new Tuple2<GpsEvent, Long>(new GpsEvent("Tracker0", i, i, i, i), Long.valueOf(1000 + i));
+            }
+        }, events);
+        assertRelative("Trace cursor", bytes, "its objects", objects, 1.1);
+    }
+
+    @Test
+    public void testVirtualReplay() {
+        // Test the whole playback path: timers, transactions and the event itself. A bare
+        // send is the baseline, as every transaction costs more for each Sodium timer system
+        // created so far. Playback adds a transaction for each virtual time step, shared by
+        // the trackers due then, the event and its timer.
+        VirtualTimerSystem timers = new VirtualTimerSystem(0);
+        TraceGpsSource source = new TraceGpsSource(traces, timers);
+        try {
+            source.open();
+        } catch (java.io.IOException e) {
+            throw new java.io.UncheckedIOException(e);
+        }
+        final long[] count = new long[1];
+        source.getMergedStream().listen(ev -> count[0]++);
+        final long events = 50000;
+        double bytes = bytesPerEvent(() -> {
+            long target = count[0] + events;
+            while (count[0] < target) {
+                timers.step();
+            }
+        }, events);
+        source.close();
+
+        StreamSink<GpsEvent> sink = new StreamSink<GpsEvent>();
+        Listener l = sink.listen(ev -> count[0]++);
+        GpsEvent ev = new GpsEvent("Tracker0", 39.9, 116.3, 0, 0);
+        double send = bytesPerEvent(() -> {
+            for (int i = 0; i < events; i++) {
+                sink.send(ev);
+            }
+        }, events);
+        l.unlisten();
+        assertRelative("Virtual replay", bytes, "a bare send", send, 3);
+    }
+
+    @Test
+    public void testDistanceLabel() {
+        // Test that summing a track no longer boxes a Double per pair of points
+        ArrayList<GpsEvent> track = new ArrayList<GpsEvent>();
+        GpsTrace trace = traces[0];
+        for (int i = 0; i < trace.size(); i++) {
+            track.add(new GpsEvent("Tracker0", trace.latitude(i), trace.longitude(i), trace.altitude(i), i));
+        }
+        while (track.size() < 100000) {
+            track.addAll(track.subList(0, Math.min(track.size(), 100000 - track.size())));
+        }
+        STextField label = new STextField("");
+        double bytes = bytesPerEvent(() -> GpsGui.updateDistanceLabel(label, track, -90, 90, -180, 180), track.size());
+        assertBudget("Distance label", bytes, 1);
+    }
+
+    @Test
+    public void testGuiListener() {
+        // Test the work GpsGui does per in-range fix: the filter check, the store update and
+        // the text shown for the fix and the tracker's distance
+        GpsTrace trace = traces[0];
+        List<GpsEvent> fixes = new ArrayList<GpsEvent>();
+        for (int i = 0; i < 2000; i++) {
+            int r = i % trace.size();
+            fixes.add(new GpsEvent("Tracker0", trace.latitude(r), trace.longitude(r), trace.altitude(r), i * 1000L));
+        }
+        GpsGui.FilterBounds bounds = new GpsGui.FilterBounds(-90, 90, -180, 180);
+        STextField name = new STextField(""), lat = new STextField(""), lon = new STextField(""), alt = new STextField("");
+        STextField distance = new STextField("");
+        double bytes = bytesPerEvent(() -> {
+            TrackerStore store = new TrackerStore(1);
+            for (GpsEvent ev : fixes) {
+                if (bounds.contains(ev)) {
+                    store.update(0, ev);
+                    GpsGui.showFix(ev, name, lat, lon, alt);
+                    GpsGui.showDistance(distance, store.snapshot(0).history, bounds);
+                }
+            }
+        }, fixes.size());
+        // Almost all of it is Swing's own text updates, so the baseline is the same six
+        // updates, the distance being shown rounded and then in full, with the text already made
+        List<String[]> texts = new ArrayList<String[]>();
+        for (GpsEvent ev : fixes) {
+            texts.add(new String[]{ev.name, Double.toString(ev.latitude), Double.toString(ev.longitude),
+                                   Double.toString(ev.altitude), Long.toString(ev.time / 7), Double.toString(ev.time / 7.0)});
+        }
+        double setText = bytesPerEvent(() -> {
+            for (String[] t : texts) {
+                name.setText(t[0]);
+                lat.setText(t[1]);
+                lon.setText(t[2]);
+                alt.setText(t[3]);
+                distance.setText(t[4]);
+                distance.setText(t[5]);
+            }
+        }, texts.size());
+        assertRelative("GUI listener", bytes, "its text updates", setText, 1.1);
+    }
+
+    @Test
+    public void testCompressedHistory() {
+        // Test that appending to a history only allocates to grow its arrays
+        GpsTrace trace = traces[0];
+        final int events = 100000;
+        double bytes = bytesPerEvent(() -> {
+            CompressedTrackHistory history = new CompressedTrackHistory("Tracker0");
+            for (int i = 0; i < events; i++) {
+                int r = i % trace.size();
+                history.add(trace.latitude(r), trace.longitude(r), trace.altitude(r));
+            }
+        }, events);
+        assertBudget("Compressed history", bytes, 24);
+    }
+
+    @Test
+    public void testAnomalyCheck() {
+        // Test that judging believable fixes allocates nothing
+        ArrayList<GpsEvent> fixes = new ArrayList<GpsEvent>();
+        for (int i = 0; i < 10000; i++) {
+            fixes.add(new GpsEvent("Tracker0", 39.9 + i * 1e-6, 116.3, 0, i * 1000L));
+        }
+        AnomalyFilter.Checker checker = new AnomalyFilter.Checker(50, AnomalyFilter.DEFAULT_RESYNC);
+        double bytes = bytesPerEvent(() -> {
+            for (GpsEvent ev : fixes) {
+                checker.check(ev);
+            }
+        }, fixes.size());
+        assertBudget("Anomaly check", bytes, 1);
+    }
+
+    @Test
+    public void testDensityMap() {
+        // Test that binning into existing tiles allocates nothing
+        GpsTrace trace = traces[0];
+        DensityMap map = new DensityMap(10, 16, 60000);
+        double bytes = bytesPerEvent(() -> {
+            for (int i = 0; i < trace.size(); i++) {
+                map.add(trace.latitude(i), trace.longitude(i), i * 1000L);
+            }
+        }, trace.size());
+        assertBudget("Density map", bytes, 1);
+    }
+
+    @Test
+    public void testProximityIndex() {
+        // Test that moving trackers that meet no one allocates nothing
+        int n = 1000;
+        ProximityDetector.Index index = new ProximityDetector.Index(n, 10, 10);
+        final int events = 100000;
+        double bytes = bytesPerEvent(() -> {
+            for (int i = 0; i < events; i++) {
+                int t = i % n;
+                // Trackers keep 1 km apart and each stays within a few cells
+                index.update(t, 39.9 + t * 0.01, 116.3 + (i / n % 4) * 1e-4, i);
+            }
+        }, events);
+        assertBudget("Proximity index", bytes, 1);
+    }
+}
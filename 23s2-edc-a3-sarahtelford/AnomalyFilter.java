@@ -0,0 +1,142 @@
+import java.util.*;
+import nz.sodium.*;
+
+/**
+ * Removes teleport-like jumps from tracker streams.
+ *
+ * Each fix is compared with the tracker's last accepted fix. If the implied speed
+ * exceeds the limit the fix is dropped from the tracker's stream and reported on
+ * {@link #anomalies()} instead, and later fixes are still compared with the last good one.
+ * After a run of consecutive rejections the tracker is assumed to have genuinely moved,
+ * such as when a recording resumes somewhere else, and the next fix is accepted as a new
+ * starting point.
+ *
+ * Each fix is judged exactly once, into a {@link Verdict} from which both the accepted
+ * and the rejected streams are derived. Judging keeps only primitives and a reference to
+ * the last accepted event, so an accepted fix costs only its verdict beyond Sodium's own
+ * allocation.
+ */
+public class AnomalyFilter {
+
+    public static final double EARTH_RADIUS = 6371000;      // Mean radius in metres
+    public static final double FEET = 0.3048;               // Metres per foot of altitude
+    public static final int DEFAULT_RESYNC = 3;             // Rejections in a row before starting afresh
+
+    private final Stream<GpsEvent>[] accepted;
+    private final Stream<GpsAnomaly>[] rejected;
+    private final Stream<GpsAnomaly> anomalies;
+
+    /**
+     * Creates a filter for the given trackers.
+     * @param streams The per-tracker streams, each of which must be in time order.
+     * @param maxSpeed The highest believable speed in metres per second.
+     */
+    public AnomalyFilter(Stream<GpsEvent>[] streams, double maxSpeed){
+        this(streams, maxSpeed, DEFAULT_RESYNC);
+    }
+
+    /**
+     * Creates a filter for the given trackers.
+     * @param streams The per-tracker streams, each of which must be in time order.
+     * @param maxSpeed The highest believable speed in metres per second.
+     * @param resync The number of rejections in a row after which the next fix is accepted.
+     */
+    @SuppressWarnings("unchecked")
+    public AnomalyFilter(Stream<GpsEvent>[] streams, double maxSpeed, int resync){
+        this.accepted = (Stream<GpsEvent>[]) new Stream[streams.length];
+        this.rejected = (Stream<GpsAnomaly>[]) new Stream[streams.length];
+        List<Stream<GpsAnomaly>> all = new ArrayList<Stream<GpsAnomaly>>();
+        for (int i = 0; i < streams.length; i++) {
+            Checker checker = new Checker(maxSpeed, resync);
+            Stream<Verdict> verdicts = streams[i].map(ev -> new Verdict(ev, checker.check(ev)));
+            this.accepted[i] = verdicts.filter(v -> v.anomaly == null).map(v -> v.event);
+            this.rejected[i] = verdicts.filter(v -> v.anomaly != null).map(v -> v.anomaly);
+            all.add(this.rejected[i]);
+        }
+        this.anomalies = Stream.merge(all, (a, b) -> a);
+    }
+
+    /**
+     * Returns the accepted fixes of each tracker.
+     */
+    public Stream<GpsEvent>[] getEventStreams(){
+        return this.accepted.clone();
+    }
+
+    /**
+     * Returns the fixes rejected from one tracker.
+     */
+    public Stream<GpsAnomaly> anomalies(int tracker){
+        return this.rejected[tracker];
+    }
+
+    /**
+     * Returns the fixes rejected from every tracker. If two trackers are rejected in the
+     * same transaction only the first is reported here; use {@link #anomalies(int)} to see both.
+     */
+    public Stream<GpsAnomaly> anomalies(){
+        return this.anomalies;
+    }
+
+    /**
+     * Returns the distance in metres between two fixes, using an equirectangular
+     * approximation that is accurate over the short hops between consecutive fixes.
+     */
+    public static double metres(double lat1, double lon1, double alt1, double lat2, double lon2, double alt2){
+        double phi = Math.toRadians((lat1 + lat2) / 2);
+        double x = Math.toRadians(lon2 - lon1) * Math.cos(phi) * EARTH_RADIUS;
+        double y = Math.toRadians(lat2 - lat1) * EARTH_RADIUS;
+        double z = (alt2 - alt1) * FEET;
+        return Math.sqrt(x*x + y*y + z*z);
+    }
+
+    /**
+     * The judgement of one fix.
+     */
+    static final class Verdict {
+
+        final GpsEvent event;
+        final GpsAnomaly anomaly;       // Null if the fix was accepted
+
+        Verdict(GpsEvent event, GpsAnomaly anomaly){
+            this.event = event;
+            this.anomaly = anomaly;
+        }
+    }
+
+    /**
+     * The state of one tracker. Each fix must be checked exactly once.
+     */
+    static final class Checker {
+
+        private final double maxSpeed;
+        private final int resync;
+        private GpsEvent last;          // Last accepted fix
+        private int rejections;         // Rejections since then
+
+        Checker(double maxSpeed, int resync){
+            this.maxSpeed = maxSpeed;
+            this.resync = resync;
+        }
+
+        /**
+         * Judges the next fix.
+         * @return The anomaly, or null if the fix is accepted.
+         */
+        GpsAnomaly check(GpsEvent ev){
+            if (this.last != null && this.rejections < this.resync) {
+                double d = metres(this.last.latitude, this.last.longitude, this.last.altitude,
+                                  ev.latitude, ev.longitude, ev.altitude);
+                long dt = ev.time - this.last.time;
+                double speed = dt > 0 ? d / (dt / 1000.0) : d > 0 ? Double.POSITIVE_INFINITY : 0;
+                if (speed > this.maxSpeed) {
+                    this.rejections++;
+                    return new GpsAnomaly(ev, this.last, speed);
+                }
+            }
+            this.last = ev;
+            this.rejections = 0;
+            return null;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import nz.sodium.*;
+
+public class AnomalyFilter_Test {
+
+    // About 11 metres of latitude
+    private static final double STEP = 0.0001;
+
+    @SafeVarargs
+    private static Stream<GpsEvent>[] streams(StreamSink<GpsEvent>... sinks) {
+        @SuppressWarnings("unchecked")
+        Stream<GpsEvent>[] streams = (Stream<GpsEvent>[]) sinks;
+        return streams;
+    }
+
+    @Test
+    public void testJumpIsRejectedAndReported() {
+        // Test that a teleport is dropped from the tracker and later fixes compare with the last good one
+        StreamSink<GpsEvent> sink = new StreamSink<GpsEvent>();
+        AnomalyFilter filter = new AnomalyFilter(streams(sink), 50);
+        List<GpsEvent> accepted = new ArrayList<GpsEvent>();
+        List<GpsAnomaly> anomalies = new ArrayList<GpsAnomaly>();
+        filter.getEventStreams()[0].listen(accepted::add);
+        filter.anomalies().listen(anomalies::add);
+
+        sink.send(new GpsEvent("Tracker0", 39.9, 116.3, 0, 0));
+        sink.send(new GpsEvent("Tracker0", 39.9 + STEP, 116.3, 0, 1000));
+        sink.send(new GpsEvent("Tracker0", 41.0, 116.3, 0, 2000));
+        sink.send(new GpsEvent("Tracker0", 39.9 + 2 * STEP, 116.3, 0, 3000));
+
+        assertEquals(3, accepted.size());
+        assertEquals(3000, accepted.get(2).time);
+        assertEquals(1, anomalies.size());
+        GpsAnomaly a = anomalies.get(0);
+        assertEquals(2000, a.event.time);
+        assertEquals(1000, a.previous.time);
+        assertTrue(a.speed > 100000);
+    }
+
+    @Test
+    public void testResyncAfterRepeatedRejections() {
+        // Test that a tracker which really has moved is followed again after a few rejections
+        StreamSink<GpsEvent> sink = new StreamSink<GpsEvent>();
+        AnomalyFilter filter = new AnomalyFilter(streams(sink), 50, 2);
+        List<GpsEvent> accepted = new ArrayList<GpsEvent>();
+        filter.getEventStreams()[0].listen(accepted::add);
+
+        sink.send(new GpsEvent("Tracker0", 39.9, 116.3, 0, 0));
+        for (int i = 1; i <= 4; i++) {
+            sink.send(new GpsEvent("Tracker0", 30.0 + i * STEP, 110.0, 0, i * 1000));
+        }
+        // Two rejections, then a new start and a believable step from it
+        assertEquals(3, accepted.size());
+        assertEquals(3000, accepted.get(1).time);
+        assertEquals(4000, accepted.get(2).time);
+    }
+
+    @Test
+    public void testTrackersAreIndependent() {
+        // Test that each tracker is judged against its own history
+        StreamSink<GpsEvent> a = new StreamSink<GpsEvent>();
+        StreamSink<GpsEvent> b = new StreamSink<GpsEvent>();
+        AnomalyFilter filter = new AnomalyFilter(streams(a, b), 50);
+        List<GpsAnomaly> anomalies = new ArrayList<GpsAnomaly>();
+        filter.anomalies().listen(anomalies::add);
+        List<GpsAnomaly> second = new ArrayList<GpsAnomaly>();
+        filter.anomalies(1).listen(second::add);
+
+        a.send(new GpsEvent("Tracker0", 39.9, 116.3, 0, 0));
+        b.send(new GpsEvent("Tracker1", 10.0, 10.0, 0, 500));
+        a.send(new GpsEvent("Tracker0", 39.9 + STEP, 116.3, 0, 1000));
+        b.send(new GpsEvent("Tracker1", 10.0, 10.0 + STEP, 0, 1500));
+        assertTrue(anomalies.isEmpty());
+
+        b.send(new GpsEvent("Tracker1", 12.0, 10.0, 0, 2500));
+        assertEquals(1, anomalies.size());
+        assertEquals(1, second.size());
+        assertEquals("Tracker1", anomalies.get(0).event.name);
+    }
+
+    @Test
+    public void testStationaryRepeatsAreAccepted() {
+        // Test that repeated fixes at the same place and time are not treated as infinitely fast
+        StreamSink<GpsEvent> sink = new StreamSink<GpsEvent>();
+        AnomalyFilter filter = new AnomalyFilter(streams(sink), 1);
+        List<GpsEvent> accepted = new ArrayList<GpsEvent>();
+        filter.getEventStreams()[0].listen(accepted::add);
+        sink.send(new GpsEvent("Tracker0", 39.9, 116.3, 100, 0));
+        sink.send(new GpsEvent("Tracker0", 39.9, 116.3, 100, 0));
+        assertEquals(2, accepted.size());
+    }
+
+    @Test
+    public void testRepeatedEventIsJudgedEachTime() {
+        // Test that sending the same event object again judges it afresh rather than reusing a verdict
+        StreamSink<GpsEvent> sink = new StreamSink<GpsEvent>();
+        AnomalyFilter filter = new AnomalyFilter(streams(sink), 50, 2);
+        List<GpsEvent> accepted = new ArrayList<GpsEvent>();
+        List<GpsAnomaly> anomalies = new ArrayList<GpsAnomaly>();
+        filter.getEventStreams()[0].listen(accepted::add);
+        filter.anomalies(0).listen(anomalies::add);
+
+        GpsEvent jump = new GpsEvent("Tracker0", 41.0, 116.3, 0, 1000);
+        sink.send(new GpsEvent("Tracker0", 39.9, 116.3, 0, 0));
+        sink.send(jump);
+        sink.send(jump);
+        sink.send(jump);
+        assertEquals(2, anomalies.size());
+        assertEquals(2, accepted.size());
+        assertSame(jump, accepted.get(1));
+    }
+
+    @Test
+    public void testMetres() {
+        // Test the distance approximation against known lengths
+        assertEquals(111195, AnomalyFilter.metres(0, 0, 0, 1, 0, 0), 1);
+        assertEquals(111195 * Math.cos(Math.toRadians(60)), AnomalyFilter.metres(60, 0, 0, 60, 1, 0), 20);
+        assertEquals(30.48, AnomalyFilter.metres(0, 0, 0, 0, 0, 100), 1e-9);
+    }
+}
@@ -0,0 +1,281 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A compact, append-only history of GPS fixes for a single tracker.
+ *
+ * Latitude and longitude are quantised to 1e-7 degrees and altitude to 1/100 ft,
+ * then stored as zigzag varint deltas from the previous point. Points are grouped
+ * into blocks of {@link #BLOCK_SIZE}; the first point of each block is stored as an
+ * absolute value so decoding can start at any block boundary.
+ */
+public class CompressedTrackHistory {
+
+    public static final int BLOCK_SIZE = 128;           // Points per independently decodable block
+    public static final double LAT_LON_SCALE = 1e7;     // Fixed-point units per degree
+    public static final double ALT_SCALE = 100.0;       // Fixed-point units per foot
+
+    private final String name;      // The name of the GPS Tracker, stored once
+    private byte[] data;            // Encoded varint stream
+    private int length;             // Number of bytes used in data
+    private int[] blockOffsets;     // Byte offset of the first point of each block
+    private int size;               // Number of points stored
+
+    private int prevLat;            // Last quantised latitude written
+    private int prevLon;            // Last quantised longitude written
+    private int prevAlt;            // Last quantised altitude written
+    private boolean shared;         // True for a snapshot, whose arrays belong to another history
+
+    /**
+     * Creates an empty history for the named tracker.
+     */
+    public CompressedTrackHistory(String name){
+        this.name = name;
+        this.data = new byte[256];
+        this.blockOffsets = new int[4];
+    }
+
+    private CompressedTrackHistory(CompressedTrackHistory source){
+        this.name = source.name;
+        this.data = source.data;
+        this.length = source.length;
+        this.blockOffsets = source.blockOffsets;
+        this.size = source.size;
+        this.prevLat = source.prevLat;
+        this.prevLon = source.prevLon;
+        this.prevAlt = source.prevAlt;
+        this.shared = true;
+    }
+
+    /**
+     * Returns a view of the points stored so far that later appends do not change.
+     * Appends only ever write past the end of the encoded points, so the view shares this
+     * history's arrays instead of copying them. Once published safely, such as through a
+     * volatile field, it can be read from any thread while this history keeps growing.
+     * Appending to the view copies its arrays first.
+     */
+    public CompressedTrackHistory snapshot(){
+        return new CompressedTrackHistory(this);
+    }
+
+    /**
+     * Returns the name of the tracker this history belongs to.
+     */
+    public String getName(){
+        return this.name;
+    }
+
+    /**
+     * Returns the number of points stored.
+     */
+    public int size(){
+        return this.size;
+    }
+
+    /**
+     * Returns an estimate of the heap bytes used by the encoded points.
+     */
+    public long encodedBytes(){
+        return this.data.length + 4L * this.blockOffsets.length;
+    }
+
+    /**
+     * Appends a GPS event to the history.
+     */
+    public void add(GpsEvent ev){
+        add(ev.latitude, ev.longitude, ev.altitude);
+    }
+
+    /**
+     * Appends a point to the history.
+     */
+    public void add(double latitude, double longitude, double altitude){
+        int lat = (int) Math.round(latitude * LAT_LON_SCALE);
+        int lon = (int) Math.round(longitude * LAT_LON_SCALE);
+        int alt = (int) Math.round(altitude * ALT_SCALE);
+
+        if (this.shared) {
+            this.data = Arrays.copyOf(this.data, Math.max(this.length + 15, this.data.length));
+            this.blockOffsets = this.blockOffsets.clone();
+            this.shared = false;
+        }
+        ensureCapacity(15);
+        if (this.size % BLOCK_SIZE == 0) {
+            int block = this.size / BLOCK_SIZE;
+            if (block == this.blockOffsets.length) {
+                this.blockOffsets = Arrays.copyOf(this.blockOffsets, block * 2);
+            }
+            this.blockOffsets[block] = this.length;
+            this.prevLat = 0;
+            this.prevLon = 0;
+            this.prevAlt = 0;
+        }
+        writeVarint(zigzag(lat - this.prevLat));
+        writeVarint(zigzag(lon - this.prevLon));
+        writeVarint(zigzag(alt - this.prevAlt));
+        this.prevLat = lat;
+        this.prevLon = lon;
+        this.prevAlt = alt;
+        this.size++;
+    }
+
+    /**
+     * Decodes the point at the given index. Sequential access should use {@link #cursor()}.
+     */
+    public GpsEvent get(int index){
+        Cursor c = cursor(index);
+        c.next();
+        return new GpsEvent(this.name, c.latitude(), c.longitude(), c.altitude());
+    }
+
+    /**
+     * Returns a cursor positioned before the first point.
+     */
+    public Cursor cursor(){
+        return cursor(0);
+    }
+
+    /**
+     * Returns a cursor positioned before the point at the given index.
+     */
+    public Cursor cursor(int index){
+        if (index < 0 || index > this.size) {
+            throw new IndexOutOfBoundsException("Index: "+index+", Size: "+this.size);
+        }
+        Cursor c = new Cursor(index - index % BLOCK_SIZE);
+        while (c.nextIndex < index) {
+            c.next();
+        }
+        return c;
+    }
+
+    /**
+     * Calculates the total distance travelled between consecutive points that both lie
+     * within the specified latitude and longitude range. Uses the same formula as
+     * {@link GpsGui#CalculateDistance(GpsEvent, GpsEvent)} without allocating per point.
+     */
+    public double totalDistance(double latLower, double latUpper, double lonLower, double lonUpper){
+        double totalDistance = 0.0;
+        Cursor c = cursor();
+        if (!c.hasNext()) {
+            return totalDistance;
+        }
+        c.next();
+        double lat1 = c.latitude(), lon1 = c.longitude(), alt1 = c.altitude();
+        boolean in1 = inRange(lat1, lon1, latLower, latUpper, lonLower, lonUpper);
+        while (c.hasNext()) {
+            c.next();
+            double lat2 = c.latitude(), lon2 = c.longitude(), alt2 = c.altitude();
+            boolean in2 = inRange(lat2, lon2, latLower, latUpper, lonLower, lonUpper);
+            if (in1 && in2) {
+                double lat = lat2 - lat1;
+                double lon = lon2 - lon1;
+                double alt = 0.3048*(alt2 - alt1);
+                totalDistance += Math.sqrt(lat*lat + lon*lon + alt*alt);
+            }
+            lat1 = lat2; lon1 = lon2; alt1 = alt2; in1 = in2;
+        }
+        return totalDistance;
+    }
+
+    private static boolean inRange(double lat, double lon, double latLower, double latUpper, double lonLower, double lonUpper){
+        return lat >= latLower && lat <= latUpper && lon >= lonLower && lon <= lonUpper;
+    }
+
+    private void ensureCapacity(int extra){
+        if (this.length + extra > this.data.length) {
+            this.data = Arrays.copyOf(this.data, Math.max(this.data.length * 2, this.length + extra));
+        }
+    }
+
+    private void writeVarint(int v){
+        while ((v & ~0x7F) != 0) {
+            this.data[this.length++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        this.data[this.length++] = (byte) v;
+    }
+
+    private static int zigzag(int v){
+        return (v << 1) ^ (v >> 31);
+    }
+
+    private static int unzigzag(int v){
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /**
+     * Sequential decoder over the stored points. Reuses its fields for every point so
+     * iteration does not allocate.
+     */
+    public class Cursor {
+
+        private int nextIndex;  // Index of the next point to decode
+        private int pos;        // Byte position of the next point
+        private int lat;        // Current quantised latitude
+        private int lon;        // Current quantised longitude
+        private int alt;        // Current quantised altitude
+
+        private Cursor(int start){
+            this.nextIndex = start;
+            this.pos = start < size ? blockOffsets[start / BLOCK_SIZE] : length;
+        }
+
+        /**
+         * Returns true if there are more points to decode.
+         */
+        public boolean hasNext(){
+            return this.nextIndex < size;
+        }
+
+        /**
+         * Advances to the next point.
+         */
+        public void next(){
+            if (this.nextIndex >= size) {
+                throw new NoSuchElementException();
+            }
+            if (this.nextIndex % BLOCK_SIZE == 0) {
+                this.lat = 0;
+                this.lon = 0;
+                this.alt = 0;
+            }
+            this.lat += unzigzag(readVarint());
+            this.lon += unzigzag(readVarint());
+            this.alt += unzigzag(readVarint());
+            this.nextIndex++;
+        }
+
+        /**
+         * Returns the index of the current point.
+         */
+        public int index(){
+            return this.nextIndex - 1;
+        }
+
+        public double latitude(){
+            return this.lat / LAT_LON_SCALE;
+        }
+
+        public double longitude(){
+            return this.lon / LAT_LON_SCALE;
+        }
+
+        public double altitude(){
+            return this.alt / ALT_SCALE;
+        }
+
+        private int readVarint(){
+            byte[] d = data;
+            int b = d[this.pos++];
+            int v = b & 0x7F;
+            int shift = 7;
+            while (b < 0) {
+                b = d[this.pos++];
+                v |= (b & 0x7F) << shift;
+                shift += 7;
+            }
+            return v;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import swidgets.STextField;
+
+import java.util.ArrayList;
+
+public class CompressedTrackHistory_Test {
+
+    private static final double LAT_LON_EPS = 1e-7;
+    private static final double ALT_EPS = 0.01;
+
+    private static ArrayList<GpsEvent> sampleTrack(int n) {
+        ArrayList<GpsEvent> events = new ArrayList<>();
+        double lat = 39.977643, lon = 116.327703, alt = 492.0;
+        for (int i = 0; i < n; i++) {
+            lat += ((i * 7919) % 13 - 6) * 1e-5;
+            lon += ((i * 104729) % 11 - 5) * 1e-5;
+            alt += (i % 5 - 2) * 0.7;
+            events.add(new GpsEvent("Tracker0", lat, lon, alt));
+        }
+        return events;
+    }
+
+    @Test
+    public void testRoundTripAcrossBlocks() {
+        // Test that points decode to within one quantum, including across block boundaries
+        ArrayList<GpsEvent> events = sampleTrack(CompressedTrackHistory.BLOCK_SIZE * 3 + 17);
+        CompressedTrackHistory history = new CompressedTrackHistory("Tracker0");
+        for (GpsEvent ev : events) {
+            history.add(ev);
+        }
+        assertEquals(events.size(), history.size());
+
+        CompressedTrackHistory.Cursor c = history.cursor();
+        for (GpsEvent ev : events) {
+            assertTrue(c.hasNext());
+            c.next();
+            assertEquals(ev.latitude, c.latitude(), LAT_LON_EPS);
+            assertEquals(ev.longitude, c.longitude(), LAT_LON_EPS);
+            assertEquals(ev.altitude, c.altitude(), ALT_EPS);
+        }
+        assertFalse(c.hasNext());
+    }
+
+    @Test
+    public void testRandomAccess() {
+        // Test that seeking to an index in the middle of a block decodes the right point
+        ArrayList<GpsEvent> events = sampleTrack(500);
+        CompressedTrackHistory history = new CompressedTrackHistory("Tracker0");
+        for (GpsEvent ev : events) {
+            history.add(ev);
+        }
+        for (int i : new int[]{0, 1, 127, 128, 129, 300, 499}) {
+            GpsEvent ev = history.get(i);
+            assertEquals("Tracker0", ev.name);
+            assertEquals(events.get(i).latitude, ev.latitude, LAT_LON_EPS);
+            assertEquals(events.get(i).longitude, ev.longitude, LAT_LON_EPS);
+        }
+    }
+
+    @Test
+    public void testExtremeCoordinates() {
+        // Test that deltas spanning the whole coordinate range survive integer wrap-around
+        CompressedTrackHistory history = new CompressedTrackHistory("Tracker0");
+        history.add(-90.0, -180.0, -1000.0);
+        history.add(90.0, 180.0, 30000.0);
+        history.add(-90.0, -180.0, 0.0);
+        assertEquals(90.0, history.get(1).latitude, LAT_LON_EPS);
+        assertEquals(180.0, history.get(1).longitude, LAT_LON_EPS);
+        assertEquals(-180.0, history.get(2).longitude, LAT_LON_EPS);
+    }
+
+    @Test
+    public void testDistanceMatchesUncompressed() {
+        // Test that the compressed distance matches updateDistanceLabel on the raw events
+        ArrayList<GpsEvent> events = sampleTrack(1000);
+        CompressedTrackHistory history = new CompressedTrackHistory("Tracker0");
+        for (GpsEvent ev : events) {
+            history.add(ev);
+        }
+        STextField expected = new STextField("");
+        STextField actual = new STextField("");
+        double raw = GpsGui.updateDistanceLabel(expected, events, 39.97, 40.0, -180, 180);
+        double compressed = GpsGui.updateDistanceLabel(actual, history, 39.97, 40.0, -180, 180);
+        assertEquals(raw, compressed, 1e-3);
+        assertEquals(expected.getText(), actual.getText());
+    }
+
+    @Test
+    public void testEncodedSizeIsSmall() {
+        // Test that a smooth track uses far less than the 24 bytes of raw doubles per point
+        CompressedTrackHistory history = new CompressedTrackHistory("Tracker0");
+        for (GpsEvent ev : sampleTrack(10000)) {
+            history.add(ev);
+        }
+        assertTrue(history.encodedBytes() < 10000L * 10);
+    }
+}
@@ -0,0 +1,153 @@
+import java.awt.*;
+import javax.swing.*;
+import nz.sodium.*;
+
+/**
+ * Paints a {@link DensityMap} at one zoom level as a heatmap over a lat/lon viewport.
+ *
+ * A Swing timer collects the tiles touched since the last tick and repaints only their
+ * screen areas. Decay fades every tile at once, so the whole view is repainted each time
+ * the newest event time moves on by a fade period. Time is taken from the events, so the
+ * view works the same on the wall clock and on a virtual replay.
+ */
+public class DensityCanvas extends JComponent {
+
+    private final DensityMap map;
+    private final int zoom;
+    private final double north, west, south, east;
+    private final double saturation;
+    private final long fadePeriod;
+    private final Timer timer;
+    private long lastFade = Long.MIN_VALUE;
+
+    /**
+     * Creates a view of a density map.
+     * @param map The map to show.
+     * @param zoom The zoom level to show, which the map must keep.
+     * @param north The latitude at the top edge.
+     * @param west The longitude at the left edge.
+     * @param south The latitude at the bottom edge.
+     * @param east The longitude at the right edge.
+     * @param saturation The count at which a tile is drawn at full strength.
+     * @param fadePeriod The event time in milliseconds between full repaints for decay.
+     * @param refresh The time in milliseconds between checks for touched tiles.
+     */
+    public DensityCanvas(DensityMap map, int zoom, double north, double west, double south, double east,
+                         double saturation, long fadePeriod, int refresh){
+        this.map = map;
+        this.zoom = zoom;
+        this.north = north;
+        this.west = west;
+        this.south = south;
+        this.east = east;
+        this.saturation = saturation;
+        this.fadePeriod = fadePeriod;
+        map.drainDirty(zoom, key -> {});
+        setOpaque(true);
+        setBackground(Color.BLACK);
+        setPreferredSize(new Dimension(600, 600));
+        this.timer = new Timer(refresh, e -> refresh());
+    }
+
+    public void addNotify(){
+        super.addNotify();
+        this.timer.start();
+    }
+
+    public void removeNotify(){
+        this.timer.stop();
+        super.removeNotify();
+    }
+
+    /**
+     * Schedules repaints for everything that changed since the last call.
+     */
+    void refresh(){
+        long newest = this.map.getNewest();
+        if (this.fadePeriod > 0 && newest != Long.MIN_VALUE && newest - this.lastFade >= this.fadePeriod) {
+            this.lastFade = newest;
+            this.map.drainDirty(this.zoom, key -> {});
+            repaint();
+            return;
+        }
+        this.map.drainDirty(this.zoom, key -> repaint(tileBounds(DensityMap.keyX(key), DensityMap.keyY(key))));
+    }
+
+    /**
+     * Returns the screen area covered by a tile, grown by a pixel to cover rounding.
+     */
+    Rectangle tileBounds(int x, int y){
+        int x0 = screenX(DensityMap.tileLongitude(x, this.zoom));
+        int x1 = screenX(DensityMap.tileLongitude(x + 1, this.zoom));
+        int y0 = screenY(DensityMap.tileLatitude(y, this.zoom));
+        int y1 = screenY(DensityMap.tileLatitude(y + 1, this.zoom));
+        return new Rectangle(x0 - 1, y0 - 1, x1 - x0 + 2, y1 - y0 + 2);
+    }
+
+    private int screenX(double longitude){
+        return (int) Math.floor((longitude - this.west) / (this.east - this.west) * getWidth());
+    }
+
+    private int screenY(double latitude){
+        return (int) Math.floor((this.north - latitude) / (this.north - this.south) * getHeight());
+    }
+
+    private double longitudeAt(int sx){
+        return this.west + (double) sx / Math.max(1, getWidth()) * (this.east - this.west);
+    }
+
+    private double latitudeAt(int sy){
+        return this.north - (double) sy / Math.max(1, getHeight()) * (this.north - this.south);
+    }
+
+    protected void paintComponent(Graphics g){
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+        long now = this.map.getNewest();
+        if (now == Long.MIN_VALUE) {
+            return;
+        }
+        int x0 = DensityMap.tileX(longitudeAt(clip.x), this.zoom);
+        int x1 = DensityMap.tileX(longitudeAt(clip.x + clip.width), this.zoom);
+        int y0 = DensityMap.tileY(latitudeAt(clip.y), this.zoom);
+        int y1 = DensityMap.tileY(latitudeAt(clip.y + clip.height), this.zoom);
+        for (int x = x0; x <= x1; x++) {
+            for (int y = y0; y <= y1; y++) {
+                double d = this.map.density(this.zoom, x, y, now);
+                if (d <= 0) {
+                    continue;
+                }
+                // Saturating curve, so both busy and rarely visited tiles stay visible
+                float heat = (float) (1 - Math.exp(-d / this.saturation));
+                g.setColor(Color.getHSBColor(0.66f * (1 - heat), 1f, 0.3f + 0.7f * heat));
+                int sx = screenX(DensityMap.tileLongitude(x, this.zoom));
+                int sy = screenY(DensityMap.tileLatitude(y, this.zoom));
+                int w = screenX(DensityMap.tileLongitude(x + 1, this.zoom)) - sx;
+                int h = screenY(DensityMap.tileLatitude(y + 1, this.zoom)) - sy;
+                g.fillRect(sx, sy, Math.max(1, w), Math.max(1, h));
+            }
+        }
+    }
+
+    /**
+     * Shows a heatmap of every tracker in gps.dat over Beijing as it is played back.
+     */
+    public static void main(String[] args){
+        final int zoom = 15;
+        GpsService serv = new GpsService();
+        DensityMap map = new DensityMap(zoom - 4, zoom, 10 * 60 * 1000);
+        map.listen(serv.getMergedStream());
+        SwingUtilities.invokeLater(() -> {
+            JFrame frame = new JFrame("Tracker Density");
+            frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+            frame.add(new DensityCanvas(map, zoom, 40.2, 116.1, 39.7, 116.7, 20, 60 * 1000, 100));
+            frame.pack();
+            frame.setVisible(true);
+        });
+    }
+}
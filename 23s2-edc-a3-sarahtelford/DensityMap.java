@@ -0,0 +1,340 @@
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+import nz.sodium.*;
+
+/**
+ * Accumulates where GPS events occur as decaying counts over lat/lon tiles at several
+ * zoom levels. At zoom z the world is split into 2^z by 2^z equal tiles, with x counting
+ * east from 180W and y counting south from 90N.
+ *
+ * Each event adds one to its tile at every zoom level, so the cost per event is
+ * proportional to the number of levels. Counts halve every half life. Rather than
+ * decaying every tile, new events are added with a weight that grows at the decay rate
+ * and reads divide it back out, so decay costs nothing per event. Every
+ * {@link #REBASE_HALF_LIVES} half lives the weights are rebased, and tiles that have
+ * decayed below {@link #MIN_COUNT} are dropped, so memory is bounded by the tiles visited
+ * recently rather than every tile ever visited.
+ *
+ * Tiles touched since the last {@link #drainDirty} are remembered so a view only needs to
+ * repaint those. Feed one map per tracker for per-tracker heatmaps, or several trackers
+ * into one map for a combined view. All methods are thread safe.
+ */
+public class DensityMap {
+
+    public static final int MAX_ZOOM = 30;      // Tile coordinates fit in an int
+
+    public static final int REBASE_HALF_LIVES = 20;    // Half lives between rebasing the weights
+    public static final double MIN_COUNT = 1e-6;        // Tiles decayed below this are dropped on a rebase
+
+    private static final double MAX_SCALE = Math.pow(2, REBASE_HALF_LIVES);
+
+    private final int minZoom;
+    private final int maxZoom;
+    private final double rate;                  // Decay per millisecond, 0 for no decay
+    private final Tiles[] levels;
+    private long base = Long.MIN_VALUE;         // Time at which the weight is 1
+    private long newest = Long.MIN_VALUE;
+
+    /**
+     * Creates a map with the given zoom levels.
+     * @param minZoom The coarsest zoom level kept.
+     * @param maxZoom The finest zoom level kept, up to {@link #MAX_ZOOM}.
+     * @param halfLife The time in milliseconds for counts to halve, or 0 to never decay.
+     */
+    public DensityMap(int minZoom, int maxZoom, long halfLife){
+        if (minZoom < 0 || maxZoom > MAX_ZOOM || minZoom > maxZoom) {
+            throw new IllegalArgumentException("Zoom levels must be within 0 to "+MAX_ZOOM);
+        }
+        this.minZoom = minZoom;
+        this.maxZoom = maxZoom;
+        this.rate = halfLife > 0 ? Math.log(2) / halfLife : 0;
+        this.levels = new Tiles[maxZoom - minZoom + 1];
+        for (int i = 0; i < this.levels.length; i++) {
+            this.levels[i] = new Tiles();
+        }
+    }
+
+    public int getMinZoom(){
+        return this.minZoom;
+    }
+
+    public int getMaxZoom(){
+        return this.maxZoom;
+    }
+
+    /**
+     * Adds every event from a stream.
+     * @return The listener, to unlisten when the map is no longer needed.
+     */
+    public Listener listen(Stream<GpsEvent> s){
+        return s.listen(this::add);
+    }
+
+    public void add(GpsEvent ev){
+        add(ev.latitude, ev.longitude, ev.time);
+    }
+
+    /**
+     * Adds one event at the given position and time in milliseconds since the epoch.
+     */
+    public synchronized void add(double latitude, double longitude, long time){
+        if (this.base == Long.MIN_VALUE) {
+            this.base = time;
+        }
+        this.newest = Math.max(this.newest, time);
+        double w = weight(time);
+        if (w > MAX_SCALE) {
+            rebase(time);
+            w = 1;
+        }
+        for (int z = this.minZoom; z <= this.maxZoom; z++) {
+            this.levels[z - this.minZoom].add(key(tileX(longitude, z), tileY(latitude, z)), w);
+        }
+    }
+
+    /**
+     * Returns the decayed count of a tile as of the given time.
+     */
+    public synchronized double density(int zoom, int x, int y, long now){
+        if (this.base == Long.MIN_VALUE) {
+            return 0;
+        }
+        return level(zoom).get(key(x, y)) / weight(now);
+    }
+
+    /**
+     * Returns the time of the newest event added, or Long.MIN_VALUE if none has been.
+     */
+    public synchronized long getNewest(){
+        return this.newest;
+    }
+
+    /**
+     * Returns the number of tiles with any count at a zoom level.
+     */
+    public synchronized int tileCount(int zoom){
+        return level(zoom).size;
+    }
+
+    /**
+     * Passes each tile at a zoom level touched since the last drain to the consumer as a
+     * key, and forgets them. Use {@link #keyX} and {@link #keyY} to unpack the keys.
+     */
+    public synchronized void drainDirty(int zoom, LongConsumer consumer){
+        level(zoom).drain(consumer);
+    }
+
+    /**
+     * Returns the tile column containing a longitude at a zoom level.
+     */
+    public static int tileX(double longitude, int zoom){
+        return clamp((int) Math.floor((longitude + 180) / 360 * (1L << zoom)), zoom);
+    }
+
+    /**
+     * Returns the tile row containing a latitude at a zoom level.
+     */
+    public static int tileY(double latitude, int zoom){
+        return clamp((int) Math.floor((90 - latitude) / 180 * (1L << zoom)), zoom);
+    }
+
+    /**
+     * Returns the longitude of the west edge of a tile column.
+     */
+    public static double tileLongitude(int x, int zoom){
+        return x * 360.0 / (1L << zoom) - 180;
+    }
+
+    /**
+     * Returns the latitude of the north edge of a tile row.
+     */
+    public static double tileLatitude(int y, int zoom){
+        return 90 - y * 180.0 / (1L << zoom);
+    }
+
+    public static long key(int x, int y){
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    public static int keyX(long key){
+        return (int) (key >>> 32);
+    }
+
+    public static int keyY(long key){
+        return (int) key;
+    }
+
+    private static int clamp(int t, int zoom){
+        return Math.max(0, Math.min((1 << zoom) - 1, t));
+    }
+
+    private Tiles level(int zoom){
+        if (zoom < this.minZoom || zoom > this.maxZoom) {
+            throw new IllegalArgumentException("Zoom "+zoom+" is not kept");
+        }
+        return this.levels[zoom - this.minZoom];
+    }
+
+    private double weight(long time){
+        return this.rate == 0 ? 1 : Math.exp(this.rate * (time - this.base));
+    }
+
+    /**
+     * Moves the weight origin to the given time, rescaling every stored count and dropping
+     * the tiles that have all but decayed away.
+     */
+    private void rebase(long time){
+        double scale = 1 / weight(time);
+        for (Tiles t : this.levels) {
+            t.scale(scale);
+            t.removeBelow(MIN_COUNT);
+        }
+        this.base = time;
+    }
+
+    /**
+     * An open addressing hash table from tile key to weighted count, with a list of the
+     * tiles touched since the last drain.
+     */
+    private static final class Tiles {
+
+        private static final long EMPTY = Long.MIN_VALUE;  // Not a valid key, since y >= 0
+
+        private long[] keys = newKeys(64);
+        private double[] values = new double[64];
+        private boolean[] dirty = new boolean[64];
+        private int size;
+        private long[] dirtyKeys = new long[16];
+        private int dirtyCount;
+
+        private static long[] newKeys(int n){
+            long[] keys = new long[n];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+
+        private int find(long key){
+            int mask = this.keys.length - 1;
+            int i = (int) mix(key) & mask;
+            while (this.keys[i] != EMPTY && this.keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        private static long mix(long key){
+            key *= 0x9E3779B97F4A7C15L;
+            return key ^ (key >>> 32);
+        }
+
+        double get(long key){
+            int i = find(key);
+            return this.keys[i] == key ? this.values[i] : 0;
+        }
+
+        void add(long key, double w){
+            int i = find(key);
+            if (this.keys[i] == EMPTY) {
+                if (2 * (this.size + 1) > this.keys.length) {
+                    grow();
+                    i = find(key);
+                }
+                this.keys[i] = key;
+                this.size++;
+            }
+            this.values[i] += w;
+            if (!this.dirty[i]) {
+                this.dirty[i] = true;
+                if (this.dirtyCount == this.dirtyKeys.length) {
+                    this.dirtyKeys = Arrays.copyOf(this.dirtyKeys, 2 * this.dirtyKeys.length);
+                }
+                this.dirtyKeys[this.dirtyCount++] = key;
+            }
+        }
+
+        private void grow(){
+            long[] keys = this.keys;
+            double[] values = this.values;
+            boolean[] dirty = this.dirty;
+            this.keys = newKeys(2 * keys.length);
+            this.values = new double[2 * keys.length];
+            this.dirty = new boolean[2 * keys.length];
+            for (int j = 0; j < keys.length; j++) {
+                if (keys[j] != EMPTY) {
+                    int i = find(keys[j]);
+                    this.keys[i] = keys[j];
+                    this.values[i] = values[j];
+                    this.dirty[i] = dirty[j];
+                }
+            }
+        }
+
+        void scale(double s){
+            for (int i = 0; i < this.values.length; i++) {
+                this.values[i] *= s;
+            }
+        }
+
+        /**
+         * Removes every tile with a count below the minimum, shifting later entries of each
+         * probe run back so lookups never need tombstones. Removed tiles are forgotten by
+         * the next drain too.
+         */
+        void removeBelow(double min){
+            int removed = 0;
+            for (int i = 0; i < this.keys.length; ) {
+                if (this.keys[i] != EMPTY && this.values[i] < min) {
+                    // Re-check the slot, as a later entry may have moved into it
+                    remove(i);
+                    removed++;
+                } else {
+                    i++;
+                }
+            }
+            if (removed == 0) {
+                return;
+            }
+            int kept = 0;
+            for (int j = 0; j < this.dirtyCount; j++) {
+                long key = this.dirtyKeys[j];
+                if (this.keys[find(key)] == key) {
+                    this.dirtyKeys[kept++] = key;
+                }
+            }
+            this.dirtyCount = kept;
+        }
+
+        private void remove(int i){
+            int mask = this.keys.length - 1;
+            int j = i;
+            while (true) {
+                j = (j + 1) & mask;
+                if (this.keys[j] == EMPTY) {
+                    break;
+                }
+                // An entry whose home lies cyclically after the gap and at or before its slot stays put
+                int home = (int) mix(this.keys[j]) & mask;
+                if (i <= j ? i < home && home <= j : i < home || home <= j) {
+                    continue;
+                }
+                this.keys[i] = this.keys[j];
+                this.values[i] = this.values[j];
+                this.dirty[i] = this.dirty[j];
+                i = j;
+            }
+            this.keys[i] = EMPTY;
+            this.values[i] = 0;
+            this.dirty[i] = false;
+            this.size--;
+        }
+
+        void drain(LongConsumer consumer){
+            for (int j = 0; j < this.dirtyCount; j++) {
+                long key = this.dirtyKeys[j];
+                this.dirty[find(key)] = false;
+                consumer.accept(key);
+            }
+            this.dirtyCount = 0;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class DensityMap_Test {
+
+    private static final double EPS = 1e-9;
+
+    @Test
+    public void testCountsAtEveryZoom() {
+        // Test that each event counts once in its tile at every zoom level kept
+        DensityMap map = new DensityMap(2, 10, 0);
+        map.add(39.98, 116.32, 0);
+        map.add(39.98, 116.32, 1000);
+        map.add(-33.9, 151.2, 2000);
+        for (int z = 2; z <= 10; z++) {
+            int x = DensityMap.tileX(116.32, z);
+            int y = DensityMap.tileY(39.98, z);
+            assertEquals(2, map.density(z, x, y, 2000), EPS);
+            assertEquals(1, map.density(z, DensityMap.tileX(151.2, z), DensityMap.tileY(-33.9, z), 2000), EPS);
+            assertEquals(2, map.tileCount(z));
+        }
+    }
+
+    @Test
+    public void testTileEdgesContainTheirPoints() {
+        // Test that a tile's edges bound the positions that map into it
+        int z = 12;
+        int x = DensityMap.tileX(116.32, z);
+        int y = DensityMap.tileY(39.98, z);
+        assertTrue(DensityMap.tileLongitude(x, z) <= 116.32 && 116.32 < DensityMap.tileLongitude(x + 1, z));
+        assertTrue(DensityMap.tileLatitude(y, z) >= 39.98 && 39.98 > DensityMap.tileLatitude(y + 1, z));
+        assertEquals(0, DensityMap.tileX(-180, z));
+        assertEquals((1 << z) - 1, DensityMap.tileX(180, z));
+        assertEquals((1 << z) - 1, DensityMap.tileY(-90, z));
+    }
+
+    @Test
+    public void testDecayHalvesEachHalfLife() {
+        // Test that counts halve every half life, including events added at different times
+        DensityMap map = new DensityMap(8, 8, 1000);
+        int x = DensityMap.tileX(116.32, 8), y = DensityMap.tileY(39.98, 8);
+        map.add(39.98, 116.32, 0);
+        assertEquals(1, map.density(8, x, y, 0), EPS);
+        assertEquals(0.5, map.density(8, x, y, 1000), EPS);
+        map.add(39.98, 116.32, 2000);
+        assertEquals(1.25, map.density(8, x, y, 2000), EPS);
+        assertEquals(0.625, map.density(8, x, y, 3000), EPS);
+    }
+
+    @Test
+    public void testDecaySurvivesLongRuns() {
+        // Test that weights are rebased rather than overflowing over many half lives
+        DensityMap map = new DensityMap(4, 4, 10);
+        int x = DensityMap.tileX(0, 4), y = DensityMap.tileY(0, 4);
+        for (long t = 0; t < 100000; t += 100) {
+            map.add(0, 0, t);
+        }
+        double d = map.density(4, x, y, 99900);
+        assertFalse(Double.isInfinite(d) || Double.isNaN(d));
+        // Geometric series of events 10 half lives apart
+        assertEquals(1 / (1 - Math.pow(2, -10)), d, 1e-6);
+    }
+
+    @Test
+    public void testDecayedTilesAreDropped() {
+        // Test that a track moving into a new tile every event keeps a bounded number of tiles
+        DensityMap map = new DensityMap(16, 16, 1000);
+        int most = 0;
+        for (int i = 0; i < 20000; i++) {
+            map.add(39.9, -170 + i * 0.01, i * 100L);
+            most = Math.max(most, map.tileCount(16));
+        }
+        // Tiles live for roughly twice the rebase interval, at 10 events per half life
+        assertTrue(most+" tiles", most <= 4 * DensityMap.REBASE_HALF_LIVES * 10);
+        int x = DensityMap.tileX(-170 + 19999 * 0.01, 16), y = DensityMap.tileY(39.9, 16);
+        assertEquals(1, map.density(16, x, y, 19999 * 100L), EPS);
+
+        // Surviving tiles are still found after the removals
+        List<Long> dirty = new ArrayList<Long>();
+        map.drainDirty(16, dirty::add);
+        assertEquals(map.tileCount(16), dirty.size());
+        for (long key : dirty) {
+            assertTrue(map.density(16, DensityMap.keyX(key), DensityMap.keyY(key), 19999 * 100L) > 0);
+        }
+    }
+
+    @Test
+    public void testDrainReportsTouchedTilesOnce() {
+        // Test that only tiles touched since the last drain are reported, each once
+        DensityMap map = new DensityMap(6, 6, 0);
+        for (int i = 0; i < 1000; i++) {
+            map.add(i % 50, i % 70, i);
+        }
+        List<Long> dirty = new ArrayList<Long>();
+        map.drainDirty(6, dirty::add);
+        assertEquals(map.tileCount(6), dirty.size());
+        assertEquals(dirty.size(), dirty.stream().distinct().count());
+
+        dirty.clear();
+        map.drainDirty(6, dirty::add);
+        assertTrue(dirty.isEmpty());
+
+        map.add(10, 20, 2000);
+        map.drainDirty(6, dirty::add);
+        assertEquals(1, dirty.size());
+        assertEquals(DensityMap.tileX(20, 6), DensityMap.keyX(dirty.get(0)));
+        assertEquals(DensityMap.tileY(10, 6), DensityMap.keyY(dirty.get(0)));
+    }
+}
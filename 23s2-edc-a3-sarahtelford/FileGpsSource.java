@@ -0,0 +1,58 @@
+import java.io.*;
+import java.util.*;
+import nz.sodium.time.*;
+
+/**
+ * Simulates live GPS data by playing back records from a serialized Geolife data file.
+ */
+public class FileGpsSource extends TraceGpsSource {
+
+    private final String path;
+    private boolean loaded;
+
+    /**
+     * Creates a source that plays back the given data file on the wall clock once opened.
+     * @param path The path of the data file, such as "gps.dat".
+     */
+    public FileGpsSource(String path){
+        this(path, GpsTimers.realTime());
+    }
+
+    /**
+     * Creates a source that plays back the given data file on a timer system once opened.
+     * @param path The path of the data file, such as "gps.dat".
+     * @param timers The timer system to play back on.
+     */
+    public FileGpsSource(String path, GpsTimerSystem timers){
+        super(timers);
+        this.path = path;
+    }
+
+    /**
+     * Reads the data file and plays that data back at the intervals given in the data set.
+     */
+    public synchronized void open() throws IOException {
+        if (!this.loaded) {
+            for (GpsTrace trace : GpsTrace.load(this.path)) {
+                addTracker(trace, 0);
+            }
+            this.loaded = true;
+        }
+        super.open();
+    }
+
+    /**
+     * Reads the recorded GPS data set from a serialized data file.
+     * @param path The path of the data file.
+     * @return One list of {latitude, longitude, altitude, delay} records per GPS Tracker.
+     */
+    @SuppressWarnings("unchecked")
+    static LinkedList<Double[]>[] readData(String path) throws IOException, ClassNotFoundException {
+        FileInputStream fileIn = new FileInputStream(path);
+        ObjectInputStream in = new ObjectInputStream(fileIn);
+        LinkedList<Double[]>[] data = (LinkedList<Double[]>[]) in.readObject();
+        in.close();
+        fileIn.close();
+        return data;
+    }
+}
@@ -0,0 +1,21 @@
+/**
+ * A GPS fix rejected by an {@link AnomalyFilter} because reaching it from the tracker's
+ * last accepted fix would have needed an impossible speed.
+ */
+public class GpsAnomaly {
+
+    public final GpsEvent event;        // The rejected fix
+    public final GpsEvent previous;     // The last accepted fix of the same tracker
+    public final double speed;          // The implied speed in metres per second
+
+    public GpsAnomaly(GpsEvent event, GpsEvent previous, double speed){
+        this.event = event;
+        this.previous = previous;
+        this.speed = speed;
+    }
+
+    @Override
+    public String toString(){
+        return "Anomaly "+this.event.name+" at "+this.event.time+": "+Math.round(this.speed)+" m/s";
+    }
+}
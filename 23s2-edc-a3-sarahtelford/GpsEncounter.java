@@ -0,0 +1,26 @@
+/**
+ * The start or end of two trackers being close to each other, as reported by a
+ * {@link ProximityDetector}. Trackers are identified by their stream index.
+ */
+public class GpsEncounter {
+
+    public final int first;             // The lower tracker index
+    public final int second;            // The higher tracker index
+    public final boolean started;       // True when they came together, false when they parted
+    public final long time;             // The time of the fix that caused the change
+    public final double distance;       // Their distance apart in metres at that time
+
+    public GpsEncounter(int first, int second, boolean started, long time, double distance){
+        this.first = Math.min(first, second);
+        this.second = Math.max(first, second);
+        this.started = started;
+        this.time = time;
+        this.distance = distance;
+    }
+
+    @Override
+    public String toString(){
+        return "Encounter "+this.first+" and "+this.second+(this.started ? " started" : " ended")
+            +" at "+this.time+": "+Math.round(this.distance)+" m";
+    }
+}
@@ -7,15 +7,24 @@ public class GpsEvent {
     public double latitude;     // The Latitude of the GPS event as a value from -90.0 to +90.0
     public double longitude;    // The Longitude of the GPS event as a value from -180.0 to +180.0
     public double altitude;     // The Altitude of the GPS event in feet
+    public long time;           // The time of the GPS event in milliseconds since the epoch
 
     /** 
-     * Creates a GpsEvent
+     * Creates a GpsEvent timestamped with the current time
      */
     public GpsEvent(String name, double latitude, double longitude, double altitude){
+        this(name, latitude, longitude, altitude, System.currentTimeMillis());
+    }
+
+    /** 
+     * Creates a GpsEvent with the given timestamp
+     */
+    public GpsEvent(String name, double latitude, double longitude, double altitude, long time){
         this.name = name;
         this.latitude = latitude;
         this.longitude = longitude;
         this.altitude = altitude;
+        this.time = time;
     }
 
     /** 
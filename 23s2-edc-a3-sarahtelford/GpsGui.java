@@ -3,7 +3,9 @@ import java.awt.*;
 import java.awt.event.*;
 import swidgets.*;
 import nz.sodium.*;
+import nz.sodium.time.*;
 import java.util.ArrayList;
+import java.util.List;
 import java.lang.Math;
 
 /**
@@ -35,11 +37,18 @@ public class GpsGui {
      * @return The calculated distance between the two points as a Double value.
      */
     public static Double CalculateDistance(GpsEvent evenT2, GpsEvent evenT3){
-        Double lat = evenT3.latitude - evenT2.latitude;
-        Double lon = evenT3.longitude - evenT2.longitude;
-        Double alt = 0.3048*(evenT3.altitude - evenT2.altitude); 
-        Double distTraveled = Math.sqrt(lat*lat + lon*lon + alt*alt);
-        return distTraveled;
+        return distance(evenT2, evenT3);
+    }
+
+    /**
+     * Calculates the same distance as {@link #CalculateDistance(GpsEvent, GpsEvent)}
+     * without boxing, for use once per pair of points.
+     */
+    static double distance(GpsEvent evenT2, GpsEvent evenT3){
+        double lat = evenT3.latitude - evenT2.latitude;
+        double lon = evenT3.longitude - evenT2.longitude;
+        double alt = 0.3048*(evenT3.altitude - evenT2.altitude);
+        return Math.sqrt(lat*lat + lon*lon + alt*alt);
     }
     
     /**
@@ -62,7 +71,7 @@ public class GpsGui {
             GpsEvent event2 = trackEvents.get(i + 1);
     
             if (isWithinRange(event1, latLower, latUpper, lonLower, lonUpper) && isWithinRange(event2, latLower, latUpper, lonLower, lonUpper)) {
-                totalDistance += CalculateDistance(event1, event2);
+                totalDistance += distance(event1, event2);
             }
         }
         long roundedDistance = Math.round(totalDistance); 
@@ -70,6 +79,98 @@ public class GpsGui {
         return totalDistance;
     }
 
+    /**
+     * Updates the distance label from a compressed tracker history, considering events
+     * within the specified latitude and longitude range.
+     *
+     * @param distanceTracker The text field for displaying the distance.
+     * @param trackEvents     The compressed history of GPS events.
+     * @param latLower        The lower limit for latitude.
+     * @param latUpper        The upper limit for latitude.
+     * @param lonLower        The lower limit for longitude.
+     * @param lonUpper        The upper limit for longitude.
+     * @return The total distance calculated.
+     */
+    public static double updateDistanceLabel(STextField distanceTracker, CompressedTrackHistory trackEvents, double latLower, double latUpper, double lonLower, double lonUpper) {
+        double totalDistance = trackEvents.totalDistance(latLower, latUpper, lonLower, lonUpper);
+        long roundedDistance = Math.round(totalDistance);
+        distanceTracker.setText(Long.toString(roundedDistance));
+        return totalDistance;
+    }
+
+    /**
+     * Shows a fix in a tracker's name and position fields.
+     */
+    static void showFix(GpsEvent ev, STextField name, STextField latitude, STextField longitude, STextField altitude) {
+        name.setText(ev.name);
+        latitude.setText(Double.toString(ev.latitude));
+        longitude.setText(Double.toString(ev.longitude));
+        altitude.setText(Double.toString(ev.altitude));
+    }
+
+    /**
+     * Shows the distance a tracker has travelled within the filter bounds, unrounded.
+     */
+    static void showDistance(STextField distanceTracker, CompressedTrackHistory trackEvents, FilterBounds bounds) {
+        double totalDistance = bounds.updateDistanceLabel(distanceTracker, trackEvents);
+        distanceTracker.setText(Double.toString(totalDistance));
+    }
+
+    /**
+     * Formats a leaderboard ranking as the text of a multi-line label.
+     *
+     * @param top The ranking, furthest first.
+     * @return HTML listing each tracker and its distance.
+     */
+    public static String formatLeaderboard(List<Leaderboard.Entry> top) {
+        StringBuilder text = new StringBuilder("<html>Most Active ("+LEADERBOARD_WINDOW / 60000+" min):");
+        for (int i = 0; i < top.size(); i++) {
+            Leaderboard.Entry e = top.get(i);
+            text.append("<br>").append(i + 1).append(". ").append(e.name).append(": ").append(String.format("%.4f", e.distance));
+        }
+        return text.append("</html>").toString();
+    }
+
+    /**
+     * The latitude and longitude range applied by the filter, read from the filter text
+     * fields when Apply Filter is clicked so that the event path never reads Swing text.
+     */
+    static final class FilterBounds {
+        final double latLower;
+        final double latUpper;
+        final double lonLower;
+        final double lonUpper;
+
+        FilterBounds(double latLower, double latUpper, double lonLower, double lonUpper) {
+            this.latLower = latLower;
+            this.latUpper = latUpper;
+            this.lonLower = lonLower;
+            this.lonUpper = lonUpper;
+        }
+
+        /**
+         * Parses the bounds from the filter text fields; call on the Swing thread.
+         */
+        static FilterBounds read(STextField latLower, STextField latUpper, STextField lonLower, STextField lonUpper) {
+            return new FilterBounds(Double.parseDouble(latLower.getText()), Double.parseDouble(latUpper.getText()),
+                                    Double.parseDouble(lonLower.getText()), Double.parseDouble(lonUpper.getText()));
+        }
+
+        boolean contains(GpsEvent ev) {
+            return isWithinRange(ev, latLower, latUpper, lonLower, lonUpper);
+        }
+
+        double updateDistanceLabel(STextField distanceTracker, CompressedTrackHistory trackEvents) {
+            return GpsGui.updateDistanceLabel(distanceTracker, trackEvents, latLower, latUpper, lonLower, lonUpper);
+        }
+    }
+
+    // The highest believable speed in metres per second, faster than any ground vehicle
+    static final double MAX_SPEED = 100;
+
+    // The time in milliseconds over which the leaderboard ranks distance travelled
+    static final long LEADERBOARD_WINDOW = 5 * 60 * 1000;
+
     // Text fields for filter values
     private static STextField latLowerLimit = new STextField("-90");
     private static STextField latUpperLimit = new STextField("90");
@@ -143,6 +244,11 @@ public class GpsGui {
         incomingPanel.setPreferredSize(new Dimension(250, 120));
         incomingPanel.setBorder(BorderFactory.createLineBorder(Color.LIGHT_GRAY, 3));
 
+        JPanel leaderboardPanel = new JPanel();
+        leaderboardPanel.setLayout(new FlowLayout());
+        leaderboardPanel.setPreferredSize(new Dimension(250, 360));
+        leaderboardPanel.setBorder(BorderFactory.createLineBorder(Color.LIGHT_GRAY, 3));
+
         JPanel filterPanel = new JPanel();
         filterPanel.setLayout(new FlowLayout());
 
@@ -173,6 +279,7 @@ public class GpsGui {
         frame.add(ninethPanel);
         frame.add(tenthPanel);
         frame.add(incomingPanel);
+        frame.add(leaderboardPanel);
         frame.add(filterPanel);
         frame.add(filterButtonPanel);
 
@@ -182,23 +289,33 @@ public class GpsGui {
 
         // Initialise the GPS Service
         GpsService serv = new GpsService();
+        boolean reportStartup = Boolean.getBoolean("gps.reportStartup");
+        if (reportStartup) {
+            System.out.println("GPS service ready after "+GpsTimers.sinceLaunch()+" ms");
+        }
+
+        // Report the time to the first event; a training run for the class data sharing archive stops there
+        serv.getMergedStream().once().listen(ev -> {
+            if (reportStartup) {
+                System.out.println("First event after "+GpsTimers.sinceLaunch()+" ms");
+            }
+            if (Boolean.getBoolean("gps.exitAfterFirstEvent")) {
+                new Thread(() -> System.exit(0)).start();
+            }
+        });
 
-        // Retrieve Event Streams
-        Stream<GpsEvent>[] streams = serv.getEventStreams();
-
-        // Define the array of GPS events for all trackers
-        ArrayList<GpsEvent> trackEvents1 = new ArrayList<GpsEvent>();
-        ArrayList<GpsEvent> trackEvents2 = new ArrayList<GpsEvent>();
-        ArrayList<GpsEvent> trackEvents3 = new ArrayList<GpsEvent>();
-        ArrayList<GpsEvent> trackEvents4 = new ArrayList<GpsEvent>();
-        ArrayList<GpsEvent> trackEvents5 = new ArrayList<GpsEvent>();
-        ArrayList<GpsEvent> trackEvents6 = new ArrayList<GpsEvent>();
-        ArrayList<GpsEvent> trackEvents7 = new ArrayList<GpsEvent>();
-        ArrayList<GpsEvent> trackEvents8 = new ArrayList<GpsEvent>();
-        ArrayList<GpsEvent> trackEvents9 = new ArrayList<GpsEvent>();
-        ArrayList<GpsEvent> trackEvents10 = new ArrayList<GpsEvent>();
-
-        // Creating Swing components for tracker information
+        // Retrieve Event Streams, without the teleport-like jumps that would inflate the distances
+        Stream<GpsEvent>[] streams = serv.getAnomalyFilter(MAX_SPEED).getEventStreams();
+
+        // Rank the trackers by distance travelled over the leaderboard window
+        Leaderboard leaderboard = new Leaderboard(streams, 20, LEADERBOARD_WINDOW, GpsTimers.periodic(serv.getTimerSystem(), 1000));
+        SLabel leaderboardLabel = new SLabel(leaderboard.top().map(GpsGui::formatLeaderboard));
+
+        // The history of every tracker, with one panel per tracker for the first ten
+        TrackerStore store = new TrackerStore(Math.max(streams.length, 10));
+
+        // Creating Swing components for tracker information. The ten tracker panels are still
+        // built up front; only their histories and the map window are created on demand
         STextField distanceTracker1 = new STextField("0");
         Cell<String> distanceCellTracker1 = distanceTracker1.sUserChanges.hold(distanceTracker1.getText());
         SLabel distanceLabelTracker1 = new SLabel(distanceCellTracker1);
@@ -298,24 +415,37 @@ public class GpsGui {
         SLabel incomingEventsLabel = new SLabel(incomingEvents);
         SButton applyFilter = new SButton("Apply Filter");
 
-        applyFilter.sClicked.listen(unit -> {
-            // Get the filter values from the snapshot
-            double latLower = Double.parseDouble(latLowerLimit.getText());
-            double latUpper = Double.parseDouble(latUpperLimit.getText());
-            double lonLower = Double.parseDouble(lonLowerLimit.getText());
-            double lonUpper = Double.parseDouble(lonUpperLimit.getText());
-
-            updateDistanceLabel(distanceTracker1, trackEvents1, latLower, latUpper, lonLower, lonUpper);
-            updateDistanceLabel(distanceTracker2, trackEvents2, latLower, latUpper, lonLower, lonUpper);
-            updateDistanceLabel(distanceTracker3, trackEvents3, latLower, latUpper, lonLower, lonUpper);
-            updateDistanceLabel(distanceTracker4, trackEvents4, latLower, latUpper, lonLower, lonUpper);
-            updateDistanceLabel(distanceTracker5, trackEvents5, latLower, latUpper, lonLower, lonUpper);
-            updateDistanceLabel(distanceTracker6, trackEvents6, latLower, latUpper, lonLower, lonUpper);
-            updateDistanceLabel(distanceTracker7, trackEvents7, latLower, latUpper, lonLower, lonUpper);
-            updateDistanceLabel(distanceTracker8, trackEvents8, latLower, latUpper, lonLower, lonUpper);
-            updateDistanceLabel(distanceTracker9, trackEvents8, latLower, latUpper, lonLower, lonUpper);
+        // The filter bounds change only when Apply Filter is clicked, which happens on the Swing thread
+        Stream<FilterBounds> sApplied = applyFilter.sClicked.map(unit -> FilterBounds.read(latLowerLimit, latUpperLimit, lonLowerLimit, lonUpperLimit));
+        Cell<FilterBounds> bounds = sApplied.hold(FilterBounds.read(latLowerLimit, latUpperLimit, lonLowerLimit, lonUpperLimit));
+
+        sApplied.listen(b -> {
+            b.updateDistanceLabel(distanceTracker1, store.snapshot(0).history);
+            b.updateDistanceLabel(distanceTracker2, store.snapshot(1).history);
+            b.updateDistanceLabel(distanceTracker3, store.snapshot(2).history);
+            b.updateDistanceLabel(distanceTracker4, store.snapshot(3).history);
+            b.updateDistanceLabel(distanceTracker5, store.snapshot(4).history);
+            b.updateDistanceLabel(distanceTracker6, store.snapshot(5).history);
+            b.updateDistanceLabel(distanceTracker7, store.snapshot(6).history);
+            b.updateDistanceLabel(distanceTracker8, store.snapshot(7).history);
+            b.updateDistanceLabel(distanceTracker9, store.snapshot(8).history);
+            b.updateDistanceLabel(distanceTracker10, store.snapshot(9).history);
         });
-    
+
+        // The map of every tracker opens in its own window, and only starts drawing once shown
+        SButton showMap = new SButton("Show Map");
+        TrackerMapCanvas[] map = new TrackerMapCanvas[1];
+        showMap.sClicked.listen(unit -> SwingUtilities.invokeLater(() -> {
+            if (map[0] == null) {
+                map[0] = new TrackerMapCanvas(40.2, 116.1, 39.7, 116.7);
+                map[0].listen(streams);
+                JFrame mapFrame = new JFrame("Tracker Map");
+                mapFrame.add(map[0]);
+                mapFrame.pack();
+            }
+            SwingUtilities.getWindowAncestor(map[0]).setVisible(true);
+        }));
+
         // Tracker 1 Display fields
         STextField nameTracker1 = new STextField("");
         Cell<String> nameCellTracker1 = nameTracker1.sUserChanges.hold(nameTracker1.getText());
@@ -506,212 +636,141 @@ public class GpsGui {
         SLabel incomingTrackerAltOutput = new SLabel(incomingTrackerAltCell);
 
 
-        // Declare a Timer for each field
-        Timer clearTracker1 = new Timer(3000, (ActionEvent e) -> {
+        // Declare a clear action for each tracker's fields
+        Runnable clearTracker1 = () -> {
             latTracker1.setText("0");
             lonTracker1.setText("0");
             altTracker1.setText("0");
             distanceTracker1.setText("0");
-        });
+        };
 
-        Timer clearTracker2 = new Timer(3000, (ActionEvent e) -> {
+        Runnable clearTracker2 = () -> {
             latTracker2.setText("0");
             lonTracker2.setText("0");
             altTracker2.setText("0");
             distanceTracker2.setText("0");
-        });
+        };
 
-        Timer clearTracker3 = new Timer(3000, (ActionEvent e) -> {
+        Runnable clearTracker3 = () -> {
             latTracker3.setText("0");
             lonTracker3.setText("0");
             altTracker3.setText("0");
             distanceTracker3.setText("0");
-        });
+        };
 
-        Timer clearTracker4 = new Timer(3000, (ActionEvent e) -> {
+        Runnable clearTracker4 = () -> {
             latTracker4.setText("0");
             lonTracker4.setText("0");
             altTracker4.setText("0");
             distanceTracker4.setText("0");
-        });
+        };
 
-        Timer clearTracker5 = new Timer(3000, (ActionEvent e) -> {
+        Runnable clearTracker5 = () -> {
             latTracker5.setText("0");
             lonTracker5.setText("0");
             altTracker5.setText("0");
             distanceTracker5.setText("0");
-        });
+        };
 
-        Timer clearTracker6 = new Timer(3000, (ActionEvent e) -> {
+        Runnable clearTracker6 = () -> {
             latTracker6.setText("0");
             lonTracker6.setText("0");
             altTracker6.setText("0");
             distanceTracker6.setText("0");
-        });
+        };
 
-        Timer clearTracker7 = new Timer(3000, (ActionEvent e) -> {
+        Runnable clearTracker7 = () -> {
             latTracker7.setText("0");
             lonTracker7.setText("0");
             altTracker7.setText("0");
             distanceTracker7.setText("0");
-        });
+        };
         
-        Timer clearTracker8 = new Timer(3000, (ActionEvent e) -> {
+        Runnable clearTracker8 = () -> {
             latTracker8.setText("0");
             lonTracker8.setText("0");
             altTracker8.setText("0");
             distanceTracker8.setText("0");
-        });
+        };
 
-        Timer clearTracker9 = new Timer(3000, (ActionEvent e) -> {
+        Runnable clearTracker9 = () -> {
             latTracker9.setText("0");
             lonTracker9.setText("0");
             altTracker9.setText("0");
             distanceTracker9.setText("0");
-        });
+        };
 
-        Timer clearTracker10 = new Timer(3000, (ActionEvent e) -> {
+        Runnable clearTracker10 = () -> {
             latTracker10.setText("0");
             lonTracker10.setText("0");
             altTracker10.setText("0");
             distanceTracker10.setText("0");
-        });
+        };
 
 
-        for(Stream<GpsEvent> s : streams){    
+        // Clear a tracker's fields once it has had no in-range events for 3 seconds
+        TimerSystem<Long> timers = serv.getTimerSystem();
+        Runnable[] clearTrackers = {clearTracker1, clearTracker2, clearTracker3, clearTracker4, clearTracker5,
+                                    clearTracker6, clearTracker7, clearTracker8, clearTracker9, clearTracker10};
+        for (int i = 0; i < streams.length && i < clearTrackers.length; i++) {
+            Runnable clearTracker = clearTrackers[i];
+            Stream<GpsEvent> inRange = streams[i].filter(ev -> bounds.sample().contains(ev));
+            GpsTimers.staleAfter(timers, inRange, 3000).listen(t -> SwingUtilities.invokeLater(clearTracker));
+        }
+
+        for (int i = 0; i < streams.length; i++) {
+            final int tracker = i;
             // Dynamically update tracker information based on received events
-            s.listen((GpsEvent ev) -> {
-                filterTrackerName.setText(ev.toString());
+            streams[i].listen((GpsEvent ev) -> {
+                SwingUtilities.invokeLater(() -> filterTrackerName.setText(ev.toString()));
 
-                if (isWithinRange(ev, Double.parseDouble(latLowerLimit.getText()), Double.parseDouble(latUpperLimit.getText()), Double.parseDouble(lonLowerLimit.getText()), Double.parseDouble(lonUpperLimit.getText()))) {
-                    incomingTrackerName.setText(ev.name);
-                    incomingTrackerLat.setText(Double.toString(ev.latitude));
-                    incomingTrackerLon.setText(Double.toString(ev.longitude));
-                    incomingTrackerAlt.setText(Double.toString(ev.altitude));
+                FilterBounds b = bounds.sample();
+                if (b.contains(ev)) {
+                    // This listener is the tracker's only writer; Swing reads the published snapshots
+                    store.update(tracker, ev);
 
                     SwingUtilities.invokeLater(() -> {
-                        switch (ev.name) {
-                            case "Tracker0":
-                                clearTracker1.restart();
-                                break;
-                            case "Tracker1":
-                                clearTracker2.restart();
-                                break;
-                            case "Tracker2":
-                                clearTracker3.restart();
-                                break;
-                            case "Tracker3":
-                                clearTracker4.restart();
-                                break;
-                            case "Tracker4":
-                                clearTracker5.restart();
-                                break;
-                            case "Tracker5":
-                                clearTracker6.restart();
-                                break;
-                            case "Tracker6":
-                                clearTracker7.restart();
-                                break;
-                            case "Tracker7":
-                                clearTracker8.restart();
-                                break;
-                            case "Tracker8":
-                                clearTracker9.restart();
-                                break;
-                            case "Tracker9":
-                                clearTracker10.restart();
-                                break;
-                    };
+                    showFix(ev, incomingTrackerName, incomingTrackerLat, incomingTrackerLon, incomingTrackerAlt);
 
                     if (ev.name.equals("Tracker0")) {   
-                        nameTracker1.setText(ev.name);
-                        latTracker1.setText(Double.toString(ev.latitude));
-                        lonTracker1.setText(Double.toString(ev.longitude));
-                        altTracker1.setText(Double.toString(ev.altitude));
-                        double totalDistance1 = updateDistanceLabel(distanceTracker1, trackEvents1, Double.parseDouble(latLowerLimit.getText()), Double.parseDouble(latUpperLimit.getText()), Double.parseDouble(lonLowerLimit.getText()), Double.parseDouble(lonUpperLimit.getText()));
-                        distanceTracker1.setText(Double.toString(totalDistance1));
-                        trackEvents1.add(ev);
+                        showFix(ev, nameTracker1, latTracker1, lonTracker1, altTracker1);
+                        showDistance(distanceTracker1, store.snapshot(0).history, b);
                     }
                     else if (ev.name.equals("Tracker1")){
-                        nameTracker2.setText(ev.name);
-                        latTracker2.setText(Double.toString(ev.latitude));
-                        lonTracker2.setText(Double.toString(ev.longitude));
-                        altTracker2.setText(Double.toString(ev.altitude));
-                        double totalDistance2 = updateDistanceLabel(distanceTracker2, trackEvents2, Double.parseDouble(latLowerLimit.getText()), Double.parseDouble(latUpperLimit.getText()), Double.parseDouble(lonLowerLimit.getText()), Double.parseDouble(lonUpperLimit.getText()));
-                        distanceTracker2.setText(Double.toString(totalDistance2));
-                        trackEvents2.add(ev);
+                        showFix(ev, nameTracker2, latTracker2, lonTracker2, altTracker2);
+                        showDistance(distanceTracker2, store.snapshot(1).history, b);
                     }
                     else if (ev.name.equals("Tracker2")) {
-                        nameTracker3.setText(ev.name);
-                        latTracker3.setText(Double.toString(ev.latitude));
-                        lonTracker3.setText(Double.toString(ev.longitude));
-                        altTracker3.setText(Double.toString(ev.altitude));
-                        double totalDistance3 = updateDistanceLabel(distanceTracker3, trackEvents3, Double.parseDouble(latLowerLimit.getText()), Double.parseDouble(latUpperLimit.getText()), Double.parseDouble(lonLowerLimit.getText()), Double.parseDouble(lonUpperLimit.getText()));
-                        distanceTracker3.setText(Double.toString(totalDistance3));
-                        trackEvents3.add(ev);
+                        showFix(ev, nameTracker3, latTracker3, lonTracker3, altTracker3);
+                        showDistance(distanceTracker3, store.snapshot(2).history, b);
                     }
                     else if (ev.name.equals("Tracker3")) {
-                        nameTracker4.setText(ev.name);
-                        latTracker4.setText(Double.toString(ev.latitude));
-                        lonTracker4.setText(Double.toString(ev.longitude));
-                        altTracker4.setText(Double.toString(ev.altitude));
-                        double totalDistance4 = updateDistanceLabel(distanceTracker4, trackEvents4, Double.parseDouble(latLowerLimit.getText()), Double.parseDouble(latUpperLimit.getText()), Double.parseDouble(lonLowerLimit.getText()), Double.parseDouble(lonUpperLimit.getText()));
-                        distanceTracker4.setText(Double.toString(totalDistance4));
-                        trackEvents4.add(ev);
+                        showFix(ev, nameTracker4, latTracker4, lonTracker4, altTracker4);
+                        showDistance(distanceTracker4, store.snapshot(3).history, b);
                     }
                     else if (ev.name.equals("Tracker4")) {
-                        nameTracker5.setText(ev.name);
-                        latTracker5.setText(Double.toString(ev.latitude));
-                        lonTracker5.setText(Double.toString(ev.longitude));
-                        altTracker5.setText(Double.toString(ev.altitude));
-                        double totalDistance5 = updateDistanceLabel(distanceTracker5, trackEvents5, Double.parseDouble(latLowerLimit.getText()), Double.parseDouble(latUpperLimit.getText()), Double.parseDouble(lonLowerLimit.getText()), Double.parseDouble(lonUpperLimit.getText()));
-                        distanceTracker5.setText(Double.toString(totalDistance5));
-                        trackEvents5.add(ev);
+                        showFix(ev, nameTracker5, latTracker5, lonTracker5, altTracker5);
+                        showDistance(distanceTracker5, store.snapshot(4).history, b);
                     }
                     else if (ev.name.equals("Tracker5")) {
-                        nameTracker6.setText(ev.name);
-                        latTracker6.setText(Double.toString(ev.latitude));
-                        lonTracker6.setText(Double.toString(ev.longitude));
-                        altTracker6.setText(Double.toString(ev.altitude));
-                        double totalDistance6 = updateDistanceLabel(distanceTracker6, trackEvents6, Double.parseDouble(latLowerLimit.getText()), Double.parseDouble(latUpperLimit.getText()), Double.parseDouble(lonLowerLimit.getText()), Double.parseDouble(lonUpperLimit.getText()));
-                        distanceTracker6.setText(Double.toString(totalDistance6));
-                        trackEvents6.add(ev);
+                        showFix(ev, nameTracker6, latTracker6, lonTracker6, altTracker6);
+                        showDistance(distanceTracker6, store.snapshot(5).history, b);
                     }
                     else if (ev.name.equals("Tracker6")) {
-                        nameTracker7.setText(ev.name);
-                        latTracker7.setText(Double.toString(ev.latitude));
-                        lonTracker7.setText(Double.toString(ev.longitude));
-                        altTracker7.setText(Double.toString(ev.altitude));
-                        double totalDistance7 = updateDistanceLabel(distanceTracker7, trackEvents7, Double.parseDouble(latLowerLimit.getText()), Double.parseDouble(latUpperLimit.getText()), Double.parseDouble(lonLowerLimit.getText()), Double.parseDouble(lonUpperLimit.getText()));
-                        distanceTracker7.setText(Double.toString(totalDistance7));
-                        trackEvents7.add(ev);
+                        showFix(ev, nameTracker7, latTracker7, lonTracker7, altTracker7);
+                        showDistance(distanceTracker7, store.snapshot(6).history, b);
                     }
                     else if (ev.name.equals("Tracker7")) {
-                        nameTracker8.setText(ev.name);
-                        latTracker8.setText(Double.toString(ev.latitude));
-                        lonTracker8.setText(Double.toString(ev.longitude));
-                        altTracker8.setText(Double.toString(ev.altitude));
-                        double totalDistance8 = updateDistanceLabel(distanceTracker8, trackEvents8, Double.parseDouble(latLowerLimit.getText()), Double.parseDouble(latUpperLimit.getText()), Double.parseDouble(lonLowerLimit.getText()), Double.parseDouble(lonUpperLimit.getText()));
-                        distanceTracker8.setText(Double.toString(totalDistance8));
-                        trackEvents8.add(ev);
+                        showFix(ev, nameTracker8, latTracker8, lonTracker8, altTracker8);
+                        showDistance(distanceTracker8, store.snapshot(7).history, b);
                     }
                     else if (ev.name.equals("Tracker8")) {
-                        nameTracker9.setText(ev.name);
-                        latTracker9.setText(Double.toString(ev.latitude));
-                        lonTracker9.setText(Double.toString(ev.longitude));
-                        altTracker9.setText(Double.toString(ev.altitude));
-                        double totalDistance9 = updateDistanceLabel(distanceTracker9, trackEvents9, Double.parseDouble(latLowerLimit.getText()), Double.parseDouble(latUpperLimit.getText()), Double.parseDouble(lonLowerLimit.getText()), Double.parseDouble(lonUpperLimit.getText()));
-                        distanceTracker9.setText(Double.toString(totalDistance9));
-                        trackEvents9.add(ev);
+                        showFix(ev, nameTracker9, latTracker9, lonTracker9, altTracker9);
+                        showDistance(distanceTracker9, store.snapshot(8).history, b);
                     }
                     else if (ev.name.equals("Tracker9")) {
-                        nameTracker10.setText(ev.name);
-                        latTracker10.setText(Double.toString(ev.latitude));
-                        lonTracker10.setText(Double.toString(ev.longitude));
-                        altTracker10.setText(Double.toString(ev.altitude));
-                        double totalDistance10 = updateDistanceLabel(distanceTracker10, trackEvents10, Double.parseDouble(latLowerLimit.getText()), Double.parseDouble(latUpperLimit.getText()), Double.parseDouble(lonLowerLimit.getText()), Double.parseDouble(lonUpperLimit.getText()));
-                        distanceTracker10.setText(Double.toString(totalDistance10));
-                        trackEvents10.add(ev);
+                        showFix(ev, nameTracker10, latTracker10, lonTracker10, altTracker10);
+                        showDistance(distanceTracker10, store.snapshot(9).history, b);
                     }
                 });     
             }     
@@ -827,6 +886,8 @@ public class GpsGui {
         incomingPanel.add(altincomingTracker);
         incomingPanel.add(incomingTrackerAltOutput);
 
+        leaderboardPanel.add(leaderboardLabel);
+
         filterPanel.add(latLowerLabel);
         filterPanel.add(latLowerLimit);
         filterPanel.add(latUpperLabel);
@@ -836,8 +897,12 @@ public class GpsGui {
         filterPanel.add(lonUpperLabel);
         filterPanel.add(lonUpperLimit);
         filterButtonPanel.add(applyFilter);
+        filterButtonPanel.add(showMap);
         
         frame.setSize(1500, 600);
         frame.setVisible(true);
+        if (reportStartup) {
+            SwingUtilities.invokeLater(() -> System.out.println("First frame after "+GpsTimers.sinceLaunch()+" ms"));
+        }
     }
 }
\ No newline at end of file
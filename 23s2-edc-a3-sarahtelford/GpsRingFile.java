@@ -0,0 +1,139 @@
+import java.io.*;
+import java.lang.invoke.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+/**
+ * A memory mapped ring buffer of GPS events shared between processes on one machine.
+ * One {@link GpsRingPublisher} writes and any number of {@link GpsRingSubscriber}s read.
+ *
+ * Layout (native byte order):
+ * <pre>
+ * int    MAGIC
+ * int    VERSION
+ * int    tracker count
+ * int    capacity, a power of two
+ * long   cursor, the sequence number of the next event to be written
+ * ...    padding to HEADER_BYTES
+ * slots: long stamp, long time, int tracker, int unused, double latitude, double longitude, double altitude
+ * </pre>
+ * Event n lives in slot n % capacity. Its stamp is 0 while the slot is being written and
+ * n + 1 once it is complete, so readers can tell a finished event from one that is still
+ * being written or has since been overwritten.
+ */
+class GpsRingFile {
+
+    static final int MAGIC = 0x47505352;            // "GPSR"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+    static final int SLOT_BYTES = 48;
+    static final int CURSOR = 16;                   // Offset of the cursor in the header
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    final MappedByteBuffer map;
+    final int trackers;
+    final int capacity;
+    private final int mask;
+
+    private GpsRingFile(MappedByteBuffer map, int trackers, int capacity){
+        this.map = map;
+        this.trackers = trackers;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Creates or replaces a ring file. A replacement is built under a temporary name and
+     * renamed over the old file, so subscribers that still map the old file are never
+     * left with a mapping past its end.
+     */
+    static GpsRingFile create(String path, int trackers, int capacity) throws IOException {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        }
+        long size = HEADER_BYTES + (long) capacity * SLOT_BYTES;
+        Path target = Paths.get(path);
+        Path temp = target.resolveSibling(target.getFileName()+".tmp");
+        FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                               StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        MappedByteBuffer map;
+        try {
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            channel.close();
+        }
+        map.order(ByteOrder.nativeOrder());
+        map.putInt(8, trackers);
+        map.putInt(12, capacity);
+        LONGS.setRelease(map, CURSOR, 0L);
+        map.putInt(4, VERSION);
+        map.putInt(0, MAGIC);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new GpsRingFile(map, trackers, capacity);
+    }
+
+    /**
+     * Maps an existing ring file for reading.
+     */
+    static GpsRingFile open(String path) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        MappedByteBuffer map;
+        try {
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            channel.close();
+        }
+        map.order(ByteOrder.nativeOrder());
+        if (map.capacity() < HEADER_BYTES || map.getInt(0) != MAGIC) {
+            throw new IOException("Not a GPS ring file");
+        }
+        if (map.getInt(4) != VERSION) {
+            throw new IOException("Unsupported GPS ring version "+map.getInt(4));
+        }
+        int trackers = map.getInt(8);
+        int capacity = map.getInt(12);
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1 || map.capacity() < HEADER_BYTES + (long) capacity * SLOT_BYTES) {
+            throw new IOException("Corrupt GPS ring header");
+        }
+        return new GpsRingFile(map, trackers, capacity);
+    }
+
+    long cursor(){
+        return (long) LONGS.getAcquire(this.map, CURSOR);
+    }
+
+    int slot(long sequence){
+        return HEADER_BYTES + (int) (sequence & this.mask) * SLOT_BYTES;
+    }
+
+    /**
+     * Writes event n. Only the single publisher may call this.
+     */
+    void write(long n, int tracker, double latitude, double longitude, double altitude, long time){
+        int s = slot(n);
+        LONGS.setVolatile(this.map, s, 0L);
+        // Keep the payload stores below from becoming visible before the zero stamp
+        VarHandle.storeStoreFence();
+        this.map.putLong(s + 8, time);
+        this.map.putInt(s + 16, tracker);
+        this.map.putDouble(s + 24, latitude);
+        this.map.putDouble(s + 32, longitude);
+        this.map.putDouble(s + 40, altitude);
+        LONGS.setRelease(this.map, s, n + 1);
+        LONGS.setRelease(this.map, CURSOR, n + 1);
+    }
+
+    long stamp(int slot){
+        return (long) LONGS.getAcquire(this.map, slot);
+    }
+
+    /**
+     * Re-reads a stamp after the slot's fields have been read.
+     */
+    long recheck(int slot){
+        VarHandle.acquireFence();
+        return (long) LONGS.getVolatile(this.map, slot);
+    }
+}
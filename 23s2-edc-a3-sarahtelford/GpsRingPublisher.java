@@ -0,0 +1,76 @@
+import java.io.*;
+import java.util.*;
+import nz.sodium.*;
+
+/**
+ * Publishes GPS events into a {@link GpsRingFile} so that other processes on the same
+ * machine can subscribe with a {@link GpsRingSubscriber}. Readers never write to the
+ * file, so adding subscribers does not slow the publisher down.
+ */
+public class GpsRingPublisher {
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;     // Events kept for slow readers
+
+    private final GpsRingFile ring;
+    private final ArrayList<Listener> listeners = new ArrayList<Listener>();
+    private long next;
+
+    /**
+     * Creates or replaces a ring file for the given number of trackers.
+     * @param path The path of the ring file.
+     * @param trackers The number of trackers.
+     * @param capacity The number of events kept, a power of two.
+     */
+    public GpsRingPublisher(String path, int trackers, int capacity) throws IOException {
+        this.ring = GpsRingFile.create(path, trackers, capacity);
+    }
+
+    /**
+     * Publishes every event from the given per-tracker streams.
+     * @param streams One stream per tracker, in tracker order.
+     */
+    public synchronized void attach(Stream<GpsEvent>[] streams){
+        for (int i = 0; i < streams.length && i < this.ring.trackers; i++) {
+            final int tracker = i;
+            this.listeners.add(streams[i].listen(ev -> publish(tracker, ev)));
+        }
+    }
+
+    /**
+     * Writes one event to the ring.
+     */
+    public synchronized void publish(int tracker, GpsEvent ev){
+        this.ring.write(this.next++, tracker, ev.latitude, ev.longitude, ev.altitude, ev.time);
+    }
+
+    /**
+     * Returns the number of events published so far.
+     */
+    public synchronized long getPublished(){
+        return this.next;
+    }
+
+    /**
+     * Stops publishing from any attached streams.
+     */
+    public synchronized void close(){
+        for (Listener l : this.listeners) {
+            l.unlisten();
+        }
+        this.listeners.clear();
+    }
+
+    /**
+     * Plays back gps.dat into a ring file until killed.
+     * Usage: GpsRingPublisher [ring file]
+     */
+    public static void main(String[] args) throws Exception {
+        String path = args.length > 0 ? args[0] : "gps.ring";
+        GpsService serv = new GpsService();
+        Stream<GpsEvent>[] streams = serv.getEventStreams();
+        GpsRingPublisher publisher = new GpsRingPublisher(path, streams.length, DEFAULT_CAPACITY);
+        publisher.attach(streams);
+        System.out.println("Publishing "+streams.length+" trackers to "+path);
+        Thread.currentThread().join();
+    }
+}
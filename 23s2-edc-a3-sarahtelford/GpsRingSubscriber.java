@@ -0,0 +1,129 @@
+import java.io.*;
+import java.util.concurrent.locks.LockSupport;
+import nz.sodium.*;
+import nz.sodium.time.*;
+
+/**
+ * Exposes the events in a {@link GpsRingFile} written by another process as local
+ * per-tracker streams. A subscriber starts at the newest event; if it falls more than the
+ * ring's capacity behind the publisher, it skips ahead and counts the events it missed.
+ */
+public class GpsRingSubscriber extends AbstractGpsSource {
+
+    private static final long IDLE_PARK_NANOS = 100_000;   // Wait between polls when the ring is idle
+
+    private final String path;
+    private GpsRingFile ring;
+    private Thread thread;
+    private volatile boolean running;
+    private volatile long received;
+    private volatile long missed;
+
+    /**
+     * Creates a subscriber for the given ring file.
+     * @param path The path of the ring file.
+     */
+    public GpsRingSubscriber(String path){
+        this(path, GpsTimers.realTime());
+    }
+
+    /**
+     * Creates a subscriber for the given ring file.
+     * @param path The path of the ring file.
+     * @param timers The timer system consumers should measure timeouts on.
+     */
+    public GpsRingSubscriber(String path, GpsTimerSystem timers){
+        super(timers);
+        this.path = path;
+    }
+
+    /**
+     * Maps the ring file and starts reading new events on a background daemon thread.
+     */
+    public synchronized void open() throws IOException {
+        if (this.thread != null) {
+            return;
+        }
+        this.ring = GpsRingFile.open(this.path);
+        createStreams(this.ring.trackers);
+        this.running = true;
+        final long start = this.ring.cursor();
+        this.thread = new Thread(() -> run(start), "GpsRingSubscriber");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Stops reading.
+     */
+    public synchronized void close(){
+        if (this.thread == null) {
+            return;
+        }
+        this.running = false;
+        try {
+            this.thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.thread = null;
+    }
+
+    /**
+     * Returns the number of events received so far.
+     */
+    public long getReceived(){
+        return this.received;
+    }
+
+    /**
+     * Returns the number of events overwritten before they could be read.
+     */
+    public long getMissed(){
+        return this.missed;
+    }
+
+    private void run(long next){
+        GpsRingFile ring = this.ring;
+        while (this.running) {
+            int s = ring.slot(next);
+            long stamp = ring.stamp(s);
+            if (stamp == next + 1) {
+                long time = ring.map.getLong(s + 8);
+                int tracker = ring.map.getInt(s + 16);
+                double latitude = ring.map.getDouble(s + 24);
+                double longitude = ring.map.getDouble(s + 32);
+                double altitude = ring.map.getDouble(s + 40);
+                if (ring.recheck(s) == stamp) {
+                    if (tracker >= 0 && tracker < ring.trackers) {
+                        publish(tracker, latitude, longitude, altitude, time);
+                    }
+                    this.received++;
+                    next++;
+                    continue;
+                }
+            } else if (stamp < next + 1) {
+                // Not written yet, or being written
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            // Overwritten: skip to the oldest event that is still in the ring
+            long oldest = ring.cursor() - ring.capacity + 1;
+            if (oldest > next) {
+                this.missed += oldest - next;
+                next = oldest;
+            }
+        }
+    }
+
+    /**
+     * Prints events from a ring file as they arrive.
+     * Usage: GpsRingSubscriber [ring file]
+     */
+    public static void main(String[] args) throws Exception {
+        GpsRingSubscriber subscriber = new GpsRingSubscriber(args.length > 0 ? args[0] : "gps.ring");
+        subscriber.open();
+        subscriber.getMergedStream().listen(ev -> System.out.println(ev));
+        Thread.currentThread().join();
+    }
+}
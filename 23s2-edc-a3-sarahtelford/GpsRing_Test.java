@@ -0,0 +1,129 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class GpsRing_Test {
+
+    private static String tempRing() throws IOException {
+        File f = File.createTempFile("gps", ".ring");
+        f.deleteOnExit();
+        return f.getPath();
+    }
+
+    private static void await(GpsRingSubscriber sub, long events) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sub.getReceived() + sub.getMissed() < events && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void testSubscribersReceiveEventsInOrder() throws Exception {
+        // Test that every subscriber sees each published event with its tracker and time
+        String path = tempRing();
+        GpsRingPublisher pub = new GpsRingPublisher(path, 3, 1024);
+        GpsRingSubscriber[] subs = { new GpsRingSubscriber(path), new GpsRingSubscriber(path) };
+        List<List<GpsEvent>> received = new ArrayList<List<GpsEvent>>();
+        for (GpsRingSubscriber sub : subs) {
+            sub.open();
+            List<GpsEvent> events = new ArrayList<GpsEvent>();
+            sub.getMergedStream().listen(ev -> events.add(ev));
+            received.add(events);
+        }
+        for (int i = 0; i < 500; i++) {
+            pub.publish(i % 3, new GpsEvent("Tracker"+(i % 3), i * 0.001, -i * 0.001, i, 1000L + i));
+        }
+        for (int s = 0; s < subs.length; s++) {
+            await(subs[s], 500);
+            subs[s].close();
+            List<GpsEvent> events = received.get(s);
+            assertEquals(0, subs[s].getMissed());
+            assertEquals(500, events.size());
+            for (int i = 0; i < 500; i++) {
+                GpsEvent ev = events.get(i);
+                assertEquals("Tracker"+(i % 3), ev.name);
+                assertEquals(1000L + i, ev.time);
+                assertEquals(i * 0.001, ev.latitude, 0);
+                assertEquals(i, ev.altitude, 0);
+            }
+        }
+        assertEquals(500, pub.getPublished());
+    }
+
+    @Test
+    public void testAttachPublishesTrackerStreams() throws Exception {
+        // Test that attaching a source's streams forwards events to the matching tracker
+        String path = tempRing();
+        nz.sodium.StreamSink<GpsEvent> a = new nz.sodium.StreamSink<GpsEvent>();
+        nz.sodium.StreamSink<GpsEvent> b = new nz.sodium.StreamSink<GpsEvent>();
+        @SuppressWarnings("unchecked")
+        nz.sodium.Stream<GpsEvent>[] streams = new nz.sodium.Stream[]{a, b};
+        GpsRingPublisher pub = new GpsRingPublisher(path, 2, 16);
+        pub.attach(streams);
+        GpsRingSubscriber sub = new GpsRingSubscriber(path);
+        sub.open();
+        List<GpsEvent> second = new ArrayList<GpsEvent>();
+        sub.getEventStreams()[1].listen(ev -> second.add(ev));
+        a.send(new GpsEvent("Tracker0", 1, 2, 3, 10));
+        b.send(new GpsEvent("Tracker1", 4, 5, 6, 20));
+        await(sub, 2);
+        sub.close();
+        pub.close();
+        assertEquals(1, second.size());
+        assertEquals("Tracker1", second.get(0).name);
+        assertEquals(20, second.get(0).time);
+    }
+
+    @Test
+    public void testSlowSubscriberSkipsOverwrittenEvents() throws Exception {
+        // Test that a subscriber that falls a full ring behind resumes at the oldest event left
+        String path = tempRing();
+        GpsRingPublisher pub = new GpsRingPublisher(path, 1, 8);
+        GpsRingSubscriber sub = new GpsRingSubscriber(path);
+        List<GpsEvent> events = new ArrayList<GpsEvent>();
+        sub.open();
+        Object gate = new Object();
+        synchronized (gate) {
+            sub.getMergedStream().listen(ev -> {
+                synchronized (gate) {
+                    events.add(ev);
+                }
+            });
+            // The subscriber blocks on the first event while the ring is lapped
+            for (int i = 0; i < 100; i++) {
+                pub.publish(0, new GpsEvent("Tracker0", 0, 0, 0, i));
+            }
+        }
+        await(sub, 100);
+        sub.close();
+        assertTrue(sub.getMissed() > 0);
+        assertEquals(100, sub.getReceived() + sub.getMissed());
+        for (int i = 1; i < events.size(); i++) {
+            assertTrue(events.get(i).time > events.get(i - 1).time);
+        }
+        assertEquals(99, events.get(events.size() - 1).time);
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsOtherFiles() throws Exception {
+        // Test that opening a file that is not a ring fails
+        new GpsRingSubscriber("gps.dat").open();
+    }
+
+    @Test
+    public void testRecreateKeepsOldMappingsValid() throws Exception {
+        // Test that replacing a ring with a smaller one leaves existing readers' mappings intact
+        String path = tempRing();
+        GpsRingFile first = GpsRingFile.create(path, 1, 1024);
+        first.write(1000, 0, 1.0, 2.0, 3.0, 4000L);
+        GpsRingFile reader = GpsRingFile.open(path);
+        GpsRingFile.create(path, 1, 2);
+        assertEquals(1001, reader.stamp(reader.slot(1000)));
+        assertEquals(2, GpsRingFile.open(path).capacity);
+        assertEquals(1024, reader.capacity);
+    }
+}
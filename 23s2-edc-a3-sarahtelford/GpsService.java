@@ -1,6 +1,6 @@
 import java.io.*;
-import java.util.*;
 import nz.sodium.*;
+import nz.sodium.time.*;
 
 /**
  * Simulates live GPS data by playing back records from the Geolife data set.
@@ -9,88 +9,113 @@ import nz.sodium.*;
  */
 public class GpsService {
 
-    private LinkedList<Stream<GpsEvent>> streams;
+    private GpsSource source;
 
     /**
-     * Constructor to initialise the GPS Service
+     * Constructor to initialise the GPS Service playing back gps.dat, streaming it from
+     * gps.trace when that has been built so startup does not wait for the data to load
      */
     public GpsService(){
-        streams = new LinkedList<Stream<GpsEvent>>();
-        this.start();
+        this(defaultSource("gps.trace", "gps.dat"));
+    }
+
+    /**
+     * Constructor to initialise the GPS Service from the given source
+     * @param source The source of GPS events, which is opened immediately.
+     */
+    public GpsService(GpsSource source){
+        this.source = source;
+        try {
+            this.source.open();
+        } catch (IOException i) {
+            i.printStackTrace();
+        }
+    }
+
+    /**
+     * Chooses the source for the default service
+     * @param trace The path of a trace file built from the data file, which may not exist.
+     * @param data The path of the serialized data file.
+     * @return A source streaming the trace file if it exists and is no older than the data
+     *    file, otherwise one loading the data file.
+     */
+    static GpsSource defaultSource(String trace, String data){
+        File traceFile = new File(trace);
+        if (traceFile.isFile()) {
+            if (traceFile.lastModified() >= new File(data).lastModified()) {
+                return new StreamingGpsSource(trace);
+            }
+            System.err.println(trace+" is older than "+data+", so loading "+data+" instead; run make trace to rebuild it");
+        }
+        return new FileGpsSource(data);
     }
 
     /**
      * Retrieves the streams of GPS Events
      * @return An array containing several streams of GPS events.
      */
-    @SuppressWarnings("unchecked")
      public Stream<GpsEvent>[] getEventStreams(){
-        return ((Stream<GpsEvent>[])this.streams.toArray(new Stream[0]));
+        return this.source.getEventStreams();
     }
 
     /**
-     * Reads binary data from the gps.dat file and plays that data back at the intervals given in the data set.
+     * Retrieves a single stream carrying the events of every tracker
+     * @return A stream of GPS events from all trackers.
      */
-    @SuppressWarnings("unchecked")
-     private void start(){
-
-        LinkedList<Double[]>[] data;
-        LinkedList<Timer> timers = new LinkedList<Timer>();
-        Timer t;
-        GpsInput ev;
-
-        // Read the data file
-        try {   
-            FileInputStream fileIn = new FileInputStream("gps.dat");
-            ObjectInputStream in = new ObjectInputStream(fileIn);
-            data = (LinkedList<Double[]>[]) in.readObject();
-            in.close();
-            fileIn.close();
-        } catch (IOException i) {
-            i.printStackTrace();
-            return;
-        } catch (ClassNotFoundException c) {
-            System.out.println("Data not found");
-            c.printStackTrace();
-            return;
-        }
+    public Stream<GpsEvent> getMergedStream(){
+        return this.source.getMergedStream();
+    }
 
-        // Setup and begin playback of records for each GPS Tracker
-        for(int i=0; i<data.length; i++){    
-            t = new Timer();
-            timers.add(t);
-            StreamSink<GpsEvent> s = new StreamSink<GpsEvent>();
-            ev = new GpsInput(i,data[i],t,s);
-            t.schedule(ev,1000);
-            this.streams.add((Stream<GpsEvent>) s);
-        }
+    /**
+     * Retrieves the events of every tracker merged into time order
+     * @param maxLateness How far in milliseconds an event may trail the newest event seen.
+     * @return A merge of all tracker streams ordered by event time.
+     */
+    public TimeOrderedMerge getTimeOrderedMerge(long maxLateness){
+        return new TimeOrderedMerge(this.source.getEventStreams(), maxLateness);
     }
 
     /**
-     * Asynchronous runnable class for playing back events at the corresponding time.
+     * Retrieves the tracker streams with teleport-like jumps removed
+     * @param maxSpeed The highest believable speed in metres per second.
+     * @return A filter whose streams hold only believable fixes.
      */
-    private class GpsInput extends TimerTask {
+    public AnomalyFilter getAnomalyFilter(double maxSpeed){
+        return new AnomalyFilter(this.source.getEventStreams(), maxSpeed);
+    }
 
-        public int id = 0;
-        public LinkedList<Double[]> data;
-        public Timer timer;
-        public StreamSink<GpsEvent> stream;
+    /**
+     * Retrieves the starts and ends of trackers coming close to each other
+     * @param radius The distance in metres at which trackers count as close.
+     * @return A detector reporting encounters between trackers.
+     */
+    public ProximityDetector getProximityDetector(double radius){
+        return new ProximityDetector(this.source.getEventStreams(), radius);
+    }
 
-        public GpsInput(int id, LinkedList<Double[]> data, Timer timer, StreamSink<GpsEvent> stream){
-            this.id = id;
-            this.data = data;
-            this.timer = timer;
-            this.stream = stream;
-        }
+    /**
+     * Retrieves a ranking of the trackers by distance travelled over a sliding window
+     * @param k The number of trackers to rank.
+     * @param window The length of the window in milliseconds.
+     * @return A leaderboard whose window also moves on every second.
+     */
+    public Leaderboard getLeaderboard(int k, long window){
+        return new Leaderboard(this.source.getEventStreams(), k, window, GpsTimers.periodic(this.source.getTimerSystem(), 1000));
+    }
 
-        public void run() {
-            Double[] event = data.poll();
-            data.add(event);
-            Double[] next = data.peek();
+    /**
+     * Retrieves the timer system the GPS events are played back on
+     * @return The source's timer system.
+     */
+    public TimerSystem<Long> getTimerSystem(){
+        return this.source.getTimerSystem();
+    }
 
-            stream.send(new GpsEvent("Tracker"+id,event[0].doubleValue(),event[1].doubleValue(),event[2].doubleValue()));
-            timer.schedule(new GpsInput(id,data,timer,stream),next[3].longValue()*1000);
-        }
+    /**
+     * Stops the GPS Service and its source.
+     */
+    public void close(){
+        this.source.close();
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,97 @@
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+ * Sends GPS fixes to a {@link SocketGpsSource} using its UDP record format.
+ * Fixes are batched into datagrams to keep the per-fix cost low.
+ */
+public class GpsSocketSender {
+
+    public static final int DEFAULT_DATAGRAM = 1400;    // Keeps datagrams under a typical MTU
+
+    private final DatagramChannel channel;
+    private final ByteBuffer buffer;
+
+    /**
+     * Creates a sender for the given ingest address.
+     * @param target The address of the ingest.
+     * @param datagramBytes The maximum payload per datagram.
+     */
+    public GpsSocketSender(InetSocketAddress target, int datagramBytes) throws IOException {
+        int records = Math.max(1, Math.min(datagramBytes, SocketGpsSource.MAX_DATAGRAM) / SocketGpsSource.RECORD_BYTES);
+        this.buffer = ByteBuffer.allocateDirect(records * SocketGpsSource.RECORD_BYTES);
+        this.channel = DatagramChannel.open();
+        this.channel.connect(target);
+    }
+
+    /**
+     * Creates a sender for the given ingest address using MTU sized datagrams.
+     */
+    public GpsSocketSender(InetSocketAddress target) throws IOException {
+        this(target, DEFAULT_DATAGRAM);
+    }
+
+    /**
+     * Queues a fix timestamped with the current time, sending the current datagram first if it is full.
+     */
+    public void send(int tracker, double latitude, double longitude, double altitude) throws IOException {
+        send(tracker, latitude, longitude, altitude, System.currentTimeMillis());
+    }
+
+    /**
+     * Queues a fix, sending the current datagram first if it is full.
+     * @param time The time of the fix in milliseconds since the epoch.
+     */
+    public void send(int tracker, double latitude, double longitude, double altitude, long time) throws IOException {
+        if (this.buffer.remaining() < SocketGpsSource.RECORD_BYTES) {
+            flush();
+        }
+        this.buffer.putInt(tracker).putLong(time).putDouble(latitude).putDouble(longitude).putDouble(altitude);
+    }
+
+    /**
+     * Sends any queued fixes.
+     */
+    public void flush() throws IOException {
+        if (this.buffer.position() == 0) {
+            return;
+        }
+        this.buffer.flip();
+        this.channel.write(this.buffer);
+        this.buffer.clear();
+    }
+
+    /**
+     * Flushes queued fixes and closes the socket.
+     */
+    public void close() throws IOException {
+        flush();
+        this.channel.close();
+    }
+
+    /**
+     * Replays the records in gps.dat to an ingest as fast as possible and reports the send rate.
+     * Usage: GpsSocketSender [host] [port] [fixes]
+     */
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 5555;
+        long fixes = args.length > 2 ? Long.parseLong(args[2]) : 1000000;
+
+        GpsTrace[] traces = GpsTrace.load("gps.dat");
+
+        GpsSocketSender sender = new GpsSocketSender(new InetSocketAddress(host, port));
+        long start = System.nanoTime();
+        for (long n = 0; n < fixes; n++) {
+            int id = (int) (n % traces.length);
+            GpsTrace trace = traces[id];
+            int i = (int) ((n / traces.length) % trace.size());
+            sender.send(id, trace.latitude(i), trace.longitude(i), trace.altitude(i));
+        }
+        sender.close();
+        double secs = (System.nanoTime() - start) / 1e9;
+        System.out.println("Sent "+fixes+" fixes in "+secs+"s ("+Math.round(fixes / secs)+" fixes/s)");
+    }
+}
@@ -0,0 +1,38 @@
+import java.io.IOException;
+import nz.sodium.*;
+import nz.sodium.time.*;
+
+/**
+ * A source of GPS events, such as a recorded trace, a generator or a live feed.
+ * Streams are available once {@link #open()} has returned.
+ */
+public interface GpsSource {
+
+    /**
+     * Starts producing events.
+     * @throws IOException If the underlying input cannot be opened.
+     */
+    void open() throws IOException;
+
+    /**
+     * Stops producing events and releases any resources held by the source.
+     */
+    void close();
+
+    /**
+     * Retrieves the streams of GPS Events
+     * @return An array containing one stream of GPS events per tracker.
+     */
+    Stream<GpsEvent>[] getEventStreams();
+
+    /**
+     * Retrieves a single stream carrying the events of every tracker.
+     * @return A stream of GPS events from all trackers.
+     */
+    Stream<GpsEvent> getMergedStream();
+
+    /**
+     * Returns the timer system the source's events are scheduled and timestamped on.
+     */
+    TimerSystem<Long> getTimerSystem();
+}
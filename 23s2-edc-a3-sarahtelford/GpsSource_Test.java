@@ -0,0 +1,245 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import nz.sodium.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+public class GpsSource_Test {
+
+    @SuppressWarnings("unchecked")
+    private static LinkedList<Double[]>[] sampleData() {
+        LinkedList<Double[]>[] data = (LinkedList<Double[]>[]) new LinkedList[2];
+        for (int t = 0; t < data.length; t++) {
+            data[t] = new LinkedList<Double[]>();
+            for (int i = 0; i < 3; i++) {
+                data[t].add(new Double[]{39.9 + t + i * 0.001, 116.3 + i * 0.001, 100.0 + i, 0.0});
+            }
+        }
+        return data;
+    }
+
+    private static void awaitSize(List<GpsEvent> events, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            synchronized (events) {
+                if (events.size() >= size) {
+                    return;
+                }
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testMappedTracePlayback() throws Exception {
+        // Test that a trace written by GpsTraceFile plays back in order through a mapped source
+        File file = File.createTempFile("gps", ".trace");
+        file.deleteOnExit();
+        GpsTraceFile.write(sampleData(), file.getPath());
+
+        MappedGpsSource source = new MappedGpsSource(file.getPath());
+        List<GpsEvent> merged = new ArrayList<>();
+        source.open();
+        Listener l = source.getMergedStream().listen(ev -> { synchronized (merged) { merged.add(ev); } });
+        assertEquals(2, source.getEventStreams().length);
+        awaitSize(merged, 6);
+        source.close();
+        l.unlisten();
+
+        synchronized (merged) {
+            assertTrue(merged.size() >= 6);
+            List<GpsEvent> tracker1 = new ArrayList<>();
+            for (GpsEvent ev : merged) {
+                if (ev.name.equals("Tracker1")) {
+                    tracker1.add(ev);
+                }
+            }
+            assertEquals(40.9, tracker1.get(0).latitude, 1e-9);
+            assertEquals(40.901, tracker1.get(1).latitude, 1e-9);
+            assertEquals(102.0, tracker1.get(2).altitude, 0.0);
+        }
+    }
+
+    private static List<String> virtualReplay(GpsSource source, VirtualTimerSystem timers, long millis) throws Exception {
+        source.open();
+        List<String> events = new ArrayList<>();
+        Listener l = source.getMergedStream().listen(ev -> events.add(ev.time+" "+ev));
+        timers.advanceTo(millis);
+        source.close();
+        l.unlisten();
+        return events;
+    }
+
+    @Test
+    public void testStreamingMatchesMapped() throws Exception {
+        // Test that streaming in tiny chunks, looping past the end of the trace, matches the mapped replay
+        @SuppressWarnings("unchecked")
+        LinkedList<Double[]>[] data = (LinkedList<Double[]>[]) new LinkedList[3];
+        for (int t = 0; t < data.length; t++) {
+            data[t] = new LinkedList<Double[]>();
+            for (int i = 0; i < 7 + t; i++) {
+                data[t].add(new Double[]{30.0 + t + i * 0.001, 110.0 + i * 0.001, (double) i, (double) (1 + (i + t) % 3)});
+            }
+        }
+        data[2].clear();
+        File file = File.createTempFile("gps", ".trace");
+        file.deleteOnExit();
+        GpsTraceFile.write(data, file.getPath());
+
+        VirtualTimerSystem mappedTimers = new VirtualTimerSystem(0);
+        List<String> mapped = virtualReplay(new MappedGpsSource(file.getPath(), mappedTimers), mappedTimers, 60000);
+        VirtualTimerSystem streamingTimers = new VirtualTimerSystem(0);
+        // Reading in place keeps the virtual replay deterministic
+        StreamingGpsSource streaming = new StreamingGpsSource(file.getPath(), streamingTimers, 2, Runnable::run);
+        List<String> streamed = virtualReplay(streaming, streamingTimers, 60000);
+
+        assertTrue(mapped.size() > 40);
+        assertEquals(mapped, streamed);
+        assertEquals(0, streaming.getUnderruns());
+    }
+
+    @Test
+    public void testStreamingDefersOnUnderrun() throws Exception {
+        // Test that playback defers rather than reading when the prefetcher falls behind
+        LinkedList<Double[]>[] data = sampleData();
+        for (LinkedList<Double[]> track : data) {
+            track.forEach(record -> record[3] = 1.0);
+        }
+        File file = File.createTempFile("gps", ".trace");
+        file.deleteOnExit();
+        GpsTraceFile.write(data, file.getPath());
+        List<Runnable> reads = new ArrayList<>();
+        VirtualTimerSystem timers = new VirtualTimerSystem(0);
+        StreamingGpsSource source = new StreamingGpsSource(file.getPath(), timers, 4, reads::add);
+        source.open();
+        List<GpsEvent> events = new ArrayList<>();
+        Listener l = source.getMergedStream().listen(events::add);
+
+        timers.advanceTo(1050);
+        assertTrue(events.isEmpty());
+        assertTrue(source.getUnderruns() > 0);
+
+        // Once the reads complete, the deferred firings play the first records
+        new ArrayList<>(reads).forEach(Runnable::run);
+        timers.advanceTo(1100);
+        source.close();
+        l.unlisten();
+        assertFalse(events.isEmpty());
+        assertTrue(events.get(0).time > 1000);
+        assertEquals(40.9, events.stream().filter(ev -> ev.name.equals("Tracker1")).findFirst().get().latitude, 1e-9);
+    }
+
+    @Test
+    public void testStreamingStopsOnReadError() throws Exception {
+        // Test that a failed read stops playback and is reported, rather than deferring forever
+        File file = File.createTempFile("gps", ".trace");
+        file.deleteOnExit();
+        GpsTraceFile.write(sampleData(), file.getPath());
+        List<Runnable> reads = new ArrayList<>();
+        VirtualTimerSystem timers = new VirtualTimerSystem(0);
+        StreamingGpsSource source = new StreamingGpsSource(file.getPath(), timers, 4, reads::add);
+        source.open();
+        List<GpsEvent> events = new ArrayList<>();
+        Listener l = source.getMergedStream().listen(events::add);
+
+        // Cut the records off after the header has been read
+        try (java.io.RandomAccessFile raf = new java.io.RandomAccessFile(file, "rw")) {
+            raf.setLength(GpsTraceFile.HEADER_BYTES);
+        }
+        new ArrayList<>(reads).forEach(Runnable::run);
+        timers.advanceTo(60000);
+        int pending = timers.pending();
+        source.close();
+        l.unlisten();
+
+        assertTrue(source.getError() instanceof java.io.EOFException);
+        assertTrue(events.isEmpty());
+        assertEquals(0, pending);
+        assertTrue(source.getUnderruns() <= 2);
+    }
+
+    @Test
+    public void testSharedTraceReplays() throws Exception {
+        // Test that one trace backs several trackers offset in time without being modified
+        GpsTrace trace = new GpsTrace(new double[]{39.9, 39.901, 39.902}, new double[]{116.3, 116.3, 116.3},
+                                      new double[]{100.0, 101.0, 102.0}, new long[]{1000, 100, 100});
+        VirtualTimerSystem timers = new VirtualTimerSystem(0);
+        TraceGpsSource source = new TraceGpsSource(timers);
+        source.addTracker(trace, 0);
+        source.addTracker(trace, 500);
+        TraceGpsSource other = new TraceGpsSource(new GpsTrace[]{trace}, timers);
+
+        source.open();
+        other.open();
+        List<GpsEvent> events = new ArrayList<>();
+        List<GpsEvent> otherEvents = new ArrayList<>();
+        Listener l1 = source.getMergedStream().listen(events::add);
+        Listener l2 = other.getMergedStream().listen(otherEvents::add);
+        timers.advanceTo(1750);
+        source.close();
+        other.close();
+        l1.unlisten();
+        l2.unlisten();
+
+        // Tracker0 plays at 1000, 1100 and 1200, Tracker1 the same records 500ms later
+        events.sort((a, b) -> Long.compare(a.time, b.time));
+        assertEquals(6, events.size());
+        assertEquals("Tracker0", events.get(0).name);
+        assertEquals(1000, events.get(0).time);
+        assertEquals("Tracker1", events.get(3).name);
+        assertEquals(1500, events.get(3).time);
+        assertEquals(events.get(0).latitude, events.get(3).latitude, 0.0);
+        assertEquals(events.get(2).altitude, events.get(5).altitude, 0.0);
+        assertEquals(3, otherEvents.size());
+        assertEquals(39.901, trace.latitude(1), 0.0);
+    }
+
+    @Test
+    public void testDefaultSourcePrefersTrace() throws Exception {
+        // Test that the default service streams a built trace and falls back to the data file
+        File file = File.createTempFile("gps", ".trace");
+        file.deleteOnExit();
+        GpsTraceFile.write(sampleData(), file.getPath());
+        assertTrue(GpsService.defaultSource(file.getPath(), "gps.dat") instanceof StreamingGpsSource);
+        assertTrue(GpsService.defaultSource(file.getPath()+".missing", "gps.dat") instanceof FileGpsSource);
+
+        // A trace older than the data file is stale and not replayed
+        assertTrue(file.setLastModified(new File("gps.dat").lastModified() - 60000));
+        assertTrue(GpsService.defaultSource(file.getPath(), "gps.dat") instanceof FileGpsSource);
+    }
+
+    @Test(expected = java.io.IOException.class)
+    public void testMappedRejectsOtherFiles() throws Exception {
+        // Test that a file without the trace header is rejected when opened
+        new MappedGpsSource("gps.dat").open();
+    }
+
+    @Test
+    public void testSyntheticSourceIsRepeatable() throws Exception {
+        // Test that two generators with the same seed produce the same walk on virtual time
+        List<List<GpsEvent>> runs = new ArrayList<>();
+        for (int run = 0; run < 2; run++) {
+            VirtualTimerSystem timers = new VirtualTimerSystem(0);
+            SyntheticGpsSource source = new SyntheticGpsSource(5, 10, 42, timers);
+            List<GpsEvent> events = new ArrayList<>();
+            source.open();
+            Listener l = source.getMergedStream().listen(events::add);
+            timers.advanceTo(40);
+            source.close();
+            timers.advanceTo(100);
+            l.unlisten();
+            runs.add(events);
+        }
+        assertEquals(20, runs.get(0).size());
+        assertEquals(20, runs.get(1).size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(runs.get(0).get(i).name, runs.get(1).get(i).name);
+            assertEquals(runs.get(0).get(i).time, runs.get(1).get(i).time);
+            assertEquals(runs.get(0).get(i).latitude, runs.get(1).get(i).latitude, 0.0);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+import java.util.ArrayDeque;
+import java.util.TreeSet;
+import nz.sodium.*;
+import nz.sodium.time.*;
+
+/**
+ * A millisecond timer system that can also run a task at a given time directly, for
+ * playback that fires far too often to build an alarm cell and an {@link #at} stream
+ * for. Due tasks run after the {@link #time} cell has moved on, each in transactions of
+ * its own. Created with no arguments it runs on the wall clock.
+ */
+public class GpsTimerSystem extends TimerSystem<Long> {
+
+    private final TimerSystemImpl<Long> impl;
+    private final ArrayDeque<Runnable> due = new ArrayDeque<Runnable>();
+
+    /**
+     * Creates a timer system on the wall clock.
+     */
+    public GpsTimerSystem(){
+        this(new WallClock());
+    }
+
+    /**
+     * Creates a timer system on the given clock.
+     */
+    protected GpsTimerSystem(TimerSystemImpl<Long> impl){
+        super(impl);
+        this.impl = impl;
+        // Registered after the time cell's hook, so tasks see the time they fire at
+        Transaction.onStart(this::runDue);
+    }
+
+    /**
+     * Runs a task once the clock reaches the given time.
+     * @param t The time to run at in milliseconds.
+     * @param task The task, which may send on sinks and schedule further tasks.
+     * @return The timer, to cancel the task before it runs.
+     */
+    public Timer schedule(long t, Runnable task){
+        return this.impl.setTimer(t, () -> {
+            synchronized (this.due) {
+                this.due.add(task);
+            }
+        });
+    }
+
+    private void runDue(){
+        while (true) {
+            Runnable task;
+            synchronized (this.due) {
+                task = this.due.poll();
+            }
+            if (task == null) {
+                return;
+            }
+            task.run();
+        }
+    }
+
+    /**
+     * Pending timers ordered by time, then by the order they were set.
+     */
+    protected abstract static class Timers implements TimerSystemImpl<Long> {
+
+        private final TreeSet<Pending> timers = new TreeSet<Pending>();
+        private long nextSeq;
+
+        /**
+         * Returns the number of timers waiting to fire.
+         */
+        synchronized int pending(){
+            return this.timers.size();
+        }
+
+        /**
+         * Returns the time of the earliest pending timer, or Long.MAX_VALUE if there is none.
+         */
+        synchronized long earliest(){
+            return this.timers.isEmpty() ? Long.MAX_VALUE : this.timers.first().t;
+        }
+
+        public Timer setTimer(Long t, Runnable callback){
+            Pending p;
+            synchronized (this) {
+                p = new Pending(t, this.nextSeq++, callback);
+                this.timers.add(p);
+            }
+            return p;
+        }
+
+        public void runTimersTo(Long t){
+            while (true) {
+                Pending fired;
+                synchronized (this) {
+                    if (this.timers.isEmpty() || this.timers.first().t > t) {
+                        return;
+                    }
+                    fired = this.timers.pollFirst();
+                }
+                fired.callback.run();
+            }
+        }
+
+        /**
+         * A timer waiting to fire.
+         */
+        private class Pending implements Timer, Comparable<Pending> {
+
+            final long t;
+            final long seq;
+            final Runnable callback;
+
+            Pending(long t, long seq, Runnable callback){
+                this.t = t;
+                this.seq = seq;
+                this.callback = callback;
+            }
+
+            public void cancel(){
+                synchronized (Timers.this) {
+                    timers.remove(this);
+                }
+            }
+
+            public int compareTo(Pending o){
+                if (this.t != o.t) {
+                    return this.t < o.t ? -1 : 1;
+                }
+                return Long.compare(this.seq, o.seq);
+            }
+        }
+    }
+
+    /**
+     * The wall clock. A daemon thread opens a transaction whenever a timer falls due, which
+     * runs the due timers.
+     */
+    private static final class WallClock extends Timers {
+
+        private Thread thread;
+
+        public Long now(){
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public Timer setTimer(Long t, Runnable callback){
+            Timer timer = super.setTimer(t, callback);
+            synchronized (this) {
+                if (this.thread == null) {
+                    this.thread = new Thread(this::run, "GpsTimerSystem");
+                    this.thread.setDaemon(true);
+                    this.thread.start();
+                }
+                notifyAll();
+            }
+            return timer;
+        }
+
+        private void run(){
+            while (true) {
+                synchronized (this) {
+                    long wait;
+                    while ((wait = earliest() - System.currentTimeMillis()) > 0) {
+                        try {
+                            wait(Math.min(wait, Integer.MAX_VALUE));
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+                Transaction.runVoid(() -> {});
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+import java.lang.management.ManagementFactory;
+import java.util.Optional;
+import nz.sodium.*;
+import nz.sodium.time.*;
+
+/**
+ * Time based helpers built on a Sodium {@link TimerSystem}, so the same logic can run on
+ * the wall clock or on a {@link VirtualTimerSystem} for instant, repeatable replays.
+ * Times are in milliseconds.
+ */
+public class GpsTimers {
+
+    private static GpsTimerSystem realTime;
+
+    /**
+     * Returns the shared wall clock timer system.
+     */
+    public static synchronized GpsTimerSystem realTime(){
+        if (realTime == null) {
+            realTime = new GpsTimerSystem();
+        }
+        return realTime;
+    }
+
+    /**
+     * Returns the wall clock time since the JVM was launched, for measuring startup.
+     */
+    public static long sinceLaunch(){
+        return System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+    }
+
+    /**
+     * Returns a stream that fires once a stream has been quiet for the given timeout.
+     * Each event restarts the timeout.
+     * @param sys The timer system to measure the timeout on.
+     * @param s The stream to watch.
+     * @param timeout The quiet period in milliseconds.
+     * @return A stream of the times at which the watched stream went stale.
+     */
+    public static <A> Stream<Long> staleAfter(TimerSystem<Long> sys, Stream<A> s, long timeout){
+        return Transaction.run(() -> sys.at(
+            s.snapshot(sys.time, (a, now) -> Optional.of(now + timeout)).hold(Optional.<Long>empty())));
+    }
+
+    /**
+     * Returns a stream that fires every period, starting one period from now.
+     * @param sys The timer system to tick on.
+     * @param period The time between ticks in milliseconds.
+     * @return A stream of tick times.
+     */
+    public static Stream<Long> periodic(TimerSystem<Long> sys, long period){
+        return Transaction.run(() -> {
+            CellLoop<Optional<Long>> alarm = new CellLoop<Optional<Long>>();
+            Stream<Long> sTick = sys.at(alarm);
+            alarm.loop(sTick.map(t -> Optional.of(t + period)).hold(Optional.of(sys.time.sample() + period)));
+            return sTick;
+        });
+    }
+}
@@ -0,0 +1,93 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * An immutable recorded track for one GPS tracker, held in primitive arrays.
+ * A trace can be shared by any number of concurrent replays, each with its own cursor.
+ */
+public final class GpsTrace {
+
+    private final double[] latitude;    // Latitude of each record
+    private final double[] longitude;   // Longitude of each record
+    private final double[] altitude;    // Altitude of each record in feet
+    private final long[] delay;         // Time from the previous record to each record in milliseconds
+
+    /**
+     * Creates a trace from copies of the given arrays, which must all be the same length.
+     */
+    public GpsTrace(double[] latitude, double[] longitude, double[] altitude, long[] delay){
+        int n = latitude.length;
+        if (longitude.length != n || altitude.length != n || delay.length != n) {
+            throw new IllegalArgumentException("Trace arrays differ in length");
+        }
+        this.latitude = latitude.clone();
+        this.longitude = longitude.clone();
+        this.altitude = altitude.clone();
+        this.delay = delay.clone();
+    }
+
+    /**
+     * Creates a trace from {latitude, longitude, altitude, delay in seconds} records.
+     */
+    public static GpsTrace fromRecords(List<Double[]> records){
+        int n = records.size();
+        double[] latitude = new double[n];
+        double[] longitude = new double[n];
+        double[] altitude = new double[n];
+        long[] delay = new long[n];
+        int i = 0;
+        for (Double[] r : records) {
+            latitude[i] = r[0].doubleValue();
+            longitude[i] = r[1].doubleValue();
+            altitude[i] = r[2].doubleValue();
+            delay[i] = r[3].longValue() * 1000;
+            i++;
+        }
+        return new GpsTrace(latitude, longitude, altitude, delay);
+    }
+
+    /**
+     * Reads one trace per tracker from a serialized data file.
+     * @param path The path of the data file, such as "gps.dat".
+     */
+    public static GpsTrace[] load(String path) throws IOException {
+        LinkedList<Double[]>[] data;
+        try {
+            data = FileGpsSource.readData(path);
+        } catch (ClassNotFoundException c) {
+            throw new IOException("Data not found", c);
+        }
+        GpsTrace[] traces = new GpsTrace[data.length];
+        for (int i = 0; i < data.length; i++) {
+            traces[i] = fromRecords(data[i]);
+        }
+        return traces;
+    }
+
+    /**
+     * Returns the number of records.
+     */
+    public int size(){
+        return this.latitude.length;
+    }
+
+    public double latitude(int i){
+        return this.latitude[i];
+    }
+
+    public double longitude(int i){
+        return this.longitude[i];
+    }
+
+    public double altitude(int i){
+        return this.altitude[i];
+    }
+
+    /**
+     * Returns the time from the previous record to the given record in milliseconds.
+     * For the first record this is the gap before the trace loops back to the start.
+     */
+    public long delay(int i){
+        return this.delay[i];
+    }
+}
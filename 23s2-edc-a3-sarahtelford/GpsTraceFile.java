@@ -0,0 +1,83 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * Reads and writes GPS traces in a flat binary format that can be memory mapped.
+ *
+ * Layout (big-endian):
+ * <pre>
+ * int    MAGIC
+ * int    VERSION
+ * int    tracker count
+ * per tracker: long record offset, int record count
+ * records: double latitude, double longitude, double altitude, double delay (seconds)
+ * </pre>
+ * Each tracker's records are stored contiguously.
+ */
+public class GpsTraceFile {
+
+    public static final int MAGIC = 0x47505354;         // "GPST"
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 12;          // Magic, version and tracker count
+    public static final int INDEX_ENTRY_BYTES = 12;     // Offset and count per tracker
+    public static final int RECORD_BYTES = 4 * 8;       // Latitude, longitude, altitude and delay
+
+    /**
+     * Writes the given records to a trace file.
+     * @param data One list of {latitude, longitude, altitude, delay} records per GPS Tracker.
+     * @param path The path of the trace file.
+     */
+    public static void write(List<Double[]>[] data, String path) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(data.length);
+            long offset = HEADER_BYTES + (long) INDEX_ENTRY_BYTES * data.length;
+            for (List<Double[]> records : data) {
+                out.writeLong(offset);
+                out.writeInt(records.size());
+                offset += (long) RECORD_BYTES * records.size();
+            }
+            for (List<Double[]> records : data) {
+                for (Double[] r : records) {
+                    out.writeDouble(r[0]);
+                    out.writeDouble(r[1]);
+                    out.writeDouble(r[2]);
+                    out.writeDouble(r[3]);
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Checks the header of a trace file and returns its tracker count.
+     * @throws IOException If the header is not a supported trace header.
+     */
+    public static int checkHeader(int magic, int version, int trackers) throws IOException {
+        if (magic != MAGIC) {
+            throw new IOException("Not a GPS trace file");
+        }
+        if (version != VERSION) {
+            throw new IOException("Unsupported GPS trace version "+version);
+        }
+        if (trackers < 0) {
+            throw new IOException("Corrupt GPS trace header");
+        }
+        return trackers;
+    }
+
+    /**
+     * Converts a serialized data file into a trace file.
+     * Usage: GpsTraceFile [input] [output]
+     */
+    public static void main(String[] args) throws Exception {
+        String input = args.length > 0 ? args[0] : "gps.dat";
+        String output = args.length > 1 ? args[1] : "gps.trace";
+        LinkedList<Double[]>[] data = FileGpsSource.readData(input);
+        write(data, output);
+        System.out.println("Wrote "+data.length+" trackers to "+output);
+    }
+}
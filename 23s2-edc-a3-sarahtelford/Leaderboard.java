@@ -0,0 +1,396 @@
+import java.util.*;
+import nz.sodium.*;
+
+/**
+ * Ranks trackers by the distance they travelled within a sliding time window.
+ *
+ * Each fix adds the distance from the tracker's previous fix, measured as in
+ * {@link GpsGui#updateDistanceLabel}, to the tracker's window total. Segments older than
+ * the window are subtracted again as later events or clock ticks move time on, in the
+ * order they arrived.
+ *
+ * The trackers are split between two indexed heaps: a min-heap of the current top K and a
+ * max-heap of the rest. Both record where each tracker sits, so a changed total is sifted
+ * in place and at most one tracker moves between the heaps. A change to a leader costs
+ * O(log K); only a change to a tracker outside the top K touches the larger heap. The
+ * leaders are only sorted, in O(K log K), to publish a ranking, which happens only when
+ * the top K's members or totals actually change.
+ */
+public class Leaderboard {
+
+    private final Cell<List<Entry>> top;
+
+    /**
+     * Creates a leaderboard whose window only moves on as events arrive.
+     * @param streams The per-tracker streams.
+     * @param k The number of trackers to rank.
+     * @param window The length of the window in milliseconds.
+     */
+    public Leaderboard(Stream<GpsEvent>[] streams, int k, long window){
+        this(streams, k, window, new Stream<Long>());
+    }
+
+    /**
+     * Creates a leaderboard whose window also moves on with a clock, so quiet trackers
+     * drop down the ranking.
+     * @param streams The per-tracker streams.
+     * @param k The number of trackers to rank.
+     * @param window The length of the window in milliseconds.
+     * @param clock A stream of the current time in milliseconds since the epoch.
+     */
+    public Leaderboard(Stream<GpsEvent>[] streams, int k, long window, Stream<Long> clock){
+        List<Stream<Arrival>> inputs = new ArrayList<Stream<Arrival>>();
+        for (int i = 0; i < streams.length; i++) {
+            final int tracker = i;
+            inputs.add(streams[i].map(ev -> new Arrival(tracker, ev, Long.MIN_VALUE, null)));
+        }
+        inputs.add(clock.map(t -> new Arrival(-1, null, t, null)));
+        Stream<Arrival> arrivals = Stream.merge(inputs, Arrival::combine);
+
+        // The board is private to this stage, and map runs exactly once per arrival
+        final Board board = new Board(streams.length, k, window);
+        this.top = arrivals.map(board::accept).filter(changed -> changed).map(changed -> board.ranking())
+                           .hold(Collections.<Entry>emptyList());
+    }
+
+    /**
+     * Returns the top trackers by distance within the window, furthest first. Trackers
+     * with nothing in the window are left out.
+     */
+    public Cell<List<Entry>> top(){
+        return this.top;
+    }
+
+    /**
+     * One place in the ranking.
+     */
+    public static final class Entry {
+
+        public final int tracker;           // The tracker's stream index
+        public final String name;           // The name from the tracker's latest event
+        public final double distance;       // The distance travelled within the window
+
+        Entry(int tracker, String name, double distance){
+            this.tracker = tracker;
+            this.name = name;
+            this.distance = distance;
+        }
+
+        @Override
+        public String toString(){
+            return this.name+": "+Math.round(this.distance);
+        }
+    }
+
+    /**
+     * The events and clock ticks arriving in one transaction, as a list.
+     */
+    static final class Arrival {
+
+        final int tracker;              // The event's tracker, or -1 for a clock tick
+        final GpsEvent event;           // Null for a clock tick
+        final long clock;               // The tick's time, or Long.MIN_VALUE for an event
+        final Arrival next;             // The other arrivals in the same transaction
+
+        Arrival(int tracker, GpsEvent event, long clock, Arrival next){
+            this.tracker = tracker;
+            this.event = event;
+            this.clock = clock;
+            this.next = next;
+        }
+
+        /**
+         * Joins simultaneous arrivals. The board does not depend on their order.
+         */
+        static Arrival combine(Arrival a, Arrival b){
+            for (Arrival x = a; x != null; x = x.next) {
+                b = new Arrival(x.tracker, x.event, x.clock, b);
+            }
+            return b;
+        }
+    }
+
+    /**
+     * Window totals, the segments still in the window and the two heaps.
+     */
+    static final class Board {
+
+        // Furthest first, ties broken by tracker index
+        private static final Comparator<Entry> RANK_ORDER = (a, b) ->
+            a.distance != b.distance ? Double.compare(b.distance, a.distance) : Integer.compare(a.tracker, b.tracker);
+
+        private final int k;
+        private final long window;
+        private final double[] totals;
+        private final GpsEvent[] last;
+        private final IndexedHeap leaders;      // Min-heap of the top K
+        private final IndexedHeap rest;         // Max-heap of everyone else with a total
+
+        // Segments in arrival order, as a ring
+        private int[] segTrackers = new int[64];
+        private long[] segTimes = new long[64];
+        private double[] segDistances = new double[64];
+        private int segHead;
+        private int segCount;
+
+        private long now = Long.MIN_VALUE;
+
+        Board(int trackers, int k, long window){
+            this.k = k;
+            this.window = window;
+            this.totals = new double[trackers];
+            this.last = new GpsEvent[trackers];
+            this.leaders = new IndexedHeap(this.totals, trackers, false);
+            this.rest = new IndexedHeap(this.totals, trackers, true);
+        }
+
+        /**
+         * Applies the arrivals of one transaction.
+         * @return Whether the ranking changed.
+         */
+        boolean accept(Arrival in){
+            boolean changed = false;
+            for (Arrival a = in; a != null; a = a.next) {
+                if (a.event != null) {
+                    changed |= add(a.tracker, a.event);
+                }
+                this.now = Math.max(this.now, a.clock);
+            }
+            changed |= expire();
+            return changed;
+        }
+
+        /**
+         * Adds a tracker's latest fix.
+         * @return Whether the ranking changed.
+         */
+        boolean add(int tracker, GpsEvent ev){
+            this.now = Math.max(this.now, ev.time);
+            GpsEvent previous = this.last[tracker];
+            this.last[tracker] = ev;
+            if (previous == null) {
+                return false;
+            }
+            double d = GpsGui.distance(previous, ev);
+            if (d == 0) {
+                return false;
+            }
+            pushSegment(tracker, ev.time, d);
+            return setTotal(tracker, this.totals[tracker] + d);
+        }
+
+        /**
+         * Removes segments that have left the window.
+         * @return Whether the ranking changed.
+         */
+        boolean expire(){
+            boolean changed = false;
+            long cutoff = this.now - this.window;
+            while (this.segCount > 0 && this.segTimes[this.segHead] <= cutoff) {
+                int tracker = this.segTrackers[this.segHead];
+                double total = this.totals[tracker] - this.segDistances[this.segHead];
+                this.segHead = (this.segHead + 1) % this.segTimes.length;
+                this.segCount--;
+                // Rounding can leave a residue once every segment is gone
+                changed |= setTotal(tracker, total < 1e-9 ? 0 : total);
+            }
+            return changed;
+        }
+
+        private void pushSegment(int tracker, long time, double d){
+            if (this.segCount == this.segTimes.length) {
+                int n = 2 * this.segTimes.length;
+                int[] trackers = new int[n];
+                long[] times = new long[n];
+                double[] distances = new double[n];
+                for (int i = 0; i < this.segCount; i++) {
+                    int j = (this.segHead + i) % this.segTimes.length;
+                    trackers[i] = this.segTrackers[j];
+                    times[i] = this.segTimes[j];
+                    distances[i] = this.segDistances[j];
+                }
+                this.segTrackers = trackers;
+                this.segTimes = times;
+                this.segDistances = distances;
+                this.segHead = 0;
+            }
+            int tail = (this.segHead + this.segCount) % this.segTimes.length;
+            this.segTrackers[tail] = tracker;
+            this.segTimes[tail] = time;
+            this.segDistances[tail] = d;
+            this.segCount++;
+        }
+
+        /**
+         * Changes a tracker's total and restores the split between the heaps.
+         * @return Whether the ranking changed, which it does not when only a tracker
+         *    outside the top K moved.
+         */
+        boolean setTotal(int tracker, double total){
+            boolean leader = this.leaders.contains(tracker);
+            boolean moved = false;
+            this.totals[tracker] = total;
+            if (this.leaders.contains(tracker)) {
+                if (total == 0) {
+                    this.leaders.remove(tracker);
+                } else {
+                    this.leaders.changed(tracker);
+                }
+            } else if (this.rest.contains(tracker)) {
+                if (total == 0) {
+                    this.rest.remove(tracker);
+                } else {
+                    this.rest.changed(tracker);
+                }
+            } else if (total > 0) {
+                this.rest.add(tracker);
+            }
+            // Fill the top K, then swap while the best of the rest beats the worst leader
+            while (this.leaders.size() < this.k && this.rest.size() > 0) {
+                this.leaders.add(this.rest.poll());
+                moved = true;
+            }
+            while (this.rest.size() > 0 && this.leaders.size() > 0
+                   && this.totals[this.rest.peek()] > this.totals[this.leaders.peek()]) {
+                int up = this.rest.poll();
+                int down = this.leaders.poll();
+                this.leaders.add(up);
+                this.rest.add(down);
+                moved = true;
+            }
+            return leader || moved || this.leaders.contains(tracker);
+        }
+
+        /**
+         * Returns the leaders, furthest first, as a list that later changes do not affect.
+         */
+        List<Entry> ranking(){
+            Entry[] ranked = new Entry[this.leaders.size()];
+            for (int i = 0; i < ranked.length; i++) {
+                int tracker = this.leaders.at(i);
+                ranked[i] = new Entry(tracker, this.last[tracker].name, this.totals[tracker]);
+            }
+            Arrays.sort(ranked, RANK_ORDER);
+            return Collections.unmodifiableList(Arrays.asList(ranked));
+        }
+    }
+
+    /**
+     * A binary heap of tracker ids ordered by their totals, which remembers each id's
+     * position so any id can be re-sifted or removed in O(log n).
+     */
+    static final class IndexedHeap {
+
+        private final double[] keys;
+        private final boolean max;
+        private final int[] heap;
+        private final int[] positions;          // Index in heap of each id, or -1
+        private int size;
+
+        IndexedHeap(double[] keys, int capacity, boolean max){
+            this.keys = keys;
+            this.max = max;
+            this.heap = new int[capacity];
+            this.positions = new int[capacity];
+            Arrays.fill(this.positions, -1);
+        }
+
+        int size(){
+            return this.size;
+        }
+
+        boolean contains(int id){
+            return this.positions[id] >= 0;
+        }
+
+        int peek(){
+            return this.heap[0];
+        }
+
+        /**
+         * Returns the id at a position in the heap, for visiting every id in no particular order.
+         */
+        int at(int i){
+            return this.heap[i];
+        }
+
+        void add(int id){
+            this.heap[this.size] = id;
+            this.positions[id] = this.size;
+            siftUp(this.size++);
+        }
+
+        int poll(){
+            int id = this.heap[0];
+            remove(id);
+            return id;
+        }
+
+        void remove(int id){
+            int i = this.positions[id];
+            int moved = this.heap[--this.size];
+            this.positions[id] = -1;
+            if (i == this.size) {
+                return;
+            }
+            this.heap[i] = moved;
+            this.positions[moved] = i;
+            changedAt(i);
+        }
+
+        /**
+         * Restores the heap order after an id's key changed.
+         */
+        void changed(int id){
+            changedAt(this.positions[id]);
+        }
+
+        private void changedAt(int i){
+            if (i > 0 && before(i, (i - 1) / 2)) {
+                siftUp(i);
+            } else {
+                siftDown(i);
+            }
+        }
+
+        private boolean before(int a, int b){
+            double ka = this.keys[this.heap[a]];
+            double kb = this.keys[this.heap[b]];
+            return this.max ? ka > kb : ka < kb;
+        }
+
+        private void siftUp(int i){
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!before(i, parent)) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i){
+            while (true) {
+                int left = 2 * i + 1;
+                if (left >= this.size) {
+                    break;
+                }
+                int child = left + 1 < this.size && before(left + 1, left) ? left + 1 : left;
+                if (!before(child, i)) {
+                    break;
+                }
+                swap(i, child);
+                i = child;
+            }
+        }
+
+        private void swap(int a, int b){
+            int t = this.heap[a];
+            this.heap[a] = this.heap[b];
+            this.heap[b] = t;
+            this.positions[this.heap[a]] = a;
+            this.positions[this.heap[b]] = b;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.*;
+import nz.sodium.*;
+
+public class Leaderboard_Test {
+
+    @Test
+    public void testRanksByWindowDistance() {
+        // Test that the cell ranks trackers furthest first using the GUI's distance measure
+        StreamSink<GpsEvent> a = new StreamSink<GpsEvent>();
+        StreamSink<GpsEvent> b = new StreamSink<GpsEvent>();
+        StreamSink<GpsEvent> c = new StreamSink<GpsEvent>();
+        @SuppressWarnings("unchecked")
+        Stream<GpsEvent>[] streams = new Stream[]{a, b, c};
+        Leaderboard board = new Leaderboard(streams, 2, 60000);
+        assertTrue(board.top().sample().isEmpty());
+
+        a.send(new GpsEvent("Tracker0", 0, 0, 0, 0));
+        b.send(new GpsEvent("Tracker1", 0, 0, 0, 0));
+        c.send(new GpsEvent("Tracker2", 0, 0, 0, 0));
+        a.send(new GpsEvent("Tracker0", 1, 0, 0, 1000));
+        b.send(new GpsEvent("Tracker1", 3, 0, 0, 1000));
+        c.send(new GpsEvent("Tracker2", 2, 0, 0, 1000));
+
+        List<Leaderboard.Entry> top = board.top().sample();
+        assertEquals(2, top.size());
+        assertEquals(1, top.get(0).tracker);
+        assertEquals("Tracker1", top.get(0).name);
+        assertEquals(3, top.get(0).distance, 1e-9);
+        assertEquals(2, top.get(1).tracker);
+
+        // Tracker0 moves further and overtakes both
+        a.send(new GpsEvent("Tracker0", 5, 0, 0, 2000));
+        top = board.top().sample();
+        assertEquals(0, top.get(0).tracker);
+        assertEquals(5, top.get(0).distance, 1e-9);
+        assertEquals(1, top.get(1).tracker);
+
+        ArrayList<GpsEvent> track = new ArrayList<GpsEvent>();
+        track.add(new GpsEvent("Tracker0", 0, 0, 0));
+        track.add(new GpsEvent("Tracker0", 1, 0, 0));
+        track.add(new GpsEvent("Tracker0", 5, 0, 0));
+        assertEquals(GpsGui.updateDistanceLabel(new swidgets.STextField(""), track, -90, 90, -180, 180), top.get(0).distance, 1e-9);
+    }
+
+    @Test
+    public void testClockExpiresQuietTrackers() {
+        // Test that clock ticks drop distance travelled before the window
+        StreamSink<GpsEvent> a = new StreamSink<GpsEvent>();
+        StreamSink<GpsEvent> b = new StreamSink<GpsEvent>();
+        StreamSink<Long> clock = new StreamSink<Long>();
+        @SuppressWarnings("unchecked")
+        Stream<GpsEvent>[] streams = new Stream[]{a, b};
+        Leaderboard board = new Leaderboard(streams, 5, 10000, clock);
+
+        a.send(new GpsEvent("Tracker0", 0, 0, 0, 0));
+        a.send(new GpsEvent("Tracker0", 4, 0, 0, 1000));
+        b.send(new GpsEvent("Tracker1", 0, 0, 0, 5000));
+        b.send(new GpsEvent("Tracker1", 1, 0, 0, 6000));
+        assertEquals(0, board.top().sample().get(0).tracker);
+
+        clock.send(11000L);
+        List<Leaderboard.Entry> top = board.top().sample();
+        assertEquals(1, top.size());
+        assertEquals(1, top.get(0).tracker);
+
+        clock.send(16000L);
+        assertTrue(board.top().sample().isEmpty());
+    }
+
+    @Test
+    public void testOnlyTopChangesArePublished() {
+        // Test that moves by a tracker outside the top K leave the published ranking alone
+        StreamSink<GpsEvent> a = new StreamSink<GpsEvent>();
+        StreamSink<GpsEvent> b = new StreamSink<GpsEvent>();
+        @SuppressWarnings("unchecked")
+        Stream<GpsEvent>[] streams = new Stream[]{a, b};
+        Leaderboard board = new Leaderboard(streams, 1, 60000);
+        List<List<Leaderboard.Entry>> published = new ArrayList<List<Leaderboard.Entry>>();
+        Operational.updates(board.top()).listen(published::add);
+
+        a.send(new GpsEvent("Tracker0", 0, 0, 0, 0));
+        a.send(new GpsEvent("Tracker0", 5, 0, 0, 1000));
+        b.send(new GpsEvent("Tracker1", 0, 0, 0, 1000));
+        assertEquals(1, published.size());
+        b.send(new GpsEvent("Tracker1", 1, 0, 0, 2000));
+        b.send(new GpsEvent("Tracker1", 2, 0, 0, 3000));
+        assertEquals(1, published.size());
+
+        // Overtaking the leader changes the ranking again
+        b.send(new GpsEvent("Tracker1", 8, 0, 0, 4000));
+        assertEquals(2, published.size());
+        assertEquals(1, published.get(1).get(0).tracker);
+        assertEquals(0, published.get(0).get(0).tracker);
+    }
+
+    @Test
+    public void testMatchesFullSort() {
+        // Test that the heaps agree with sorting every tracker's window total after each event
+        int trackers = 200, k = 20;
+        long window = 5000;
+        Random random = new Random(11);
+        Leaderboard.Board board = new Leaderboard.Board(trackers, k, window);
+        double[][] positions = new double[trackers][];
+        List<long[]> segmentTimes = new ArrayList<long[]>();
+        List<double[]> segments = new ArrayList<double[]>();
+        for (long time = 0; time < 30000; time += 10) {
+            int t = random.nextInt(trackers);
+            // A few trackers move much more, so the ranking is not just noise
+            double step = random.nextDouble() * (t % 17 == 0 ? 1 : 0.01);
+            double lat = positions[t] == null ? 0 : positions[t][0] + step;
+            GpsEvent ev = new GpsEvent("Tracker"+t, lat, 0, 0, time);
+            if (positions[t] != null && step > 0) {
+                segmentTimes.add(new long[]{time, t});
+                segments.add(new double[]{step});
+            }
+            positions[t] = new double[]{lat};
+            board.add(t, ev);
+            board.expire();
+
+            if (time % 1000 != 0) {
+                continue;
+            }
+            double[] totals = new double[trackers];
+            for (int i = 0; i < segments.size(); i++) {
+                if (segmentTimes.get(i)[0] > time - window) {
+                    totals[(int) segmentTimes.get(i)[1]] += segments.get(i)[0];
+                }
+            }
+            List<Leaderboard.Entry> ranking = board.ranking();
+            Integer[] order = new Integer[trackers];
+            for (int i = 0; i < trackers; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (x, y) -> Double.compare(totals[y], totals[x]));
+            int expected = 0;
+            while (expected < k && totals[order[expected]] > 1e-9) {
+                expected++;
+            }
+            assertEquals(expected, ranking.size());
+            for (int i = 0; i < ranking.size(); i++) {
+                assertEquals(totals[order[i]], ranking.get(i).distance, 1e-6);
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import nz.sodium.*;
+import nz.sodium.time.*;
+
+/**
+ * Simulates live GPS data by playing back a memory mapped {@link GpsTraceFile}.
+ * Records are read in place from the mapping, so the trace is never copied onto the heap.
+ * A single mapping is limited to 2 GB.
+ */
+public class MappedGpsSource extends AbstractGpsSource {
+
+    private final String path;
+
+    /**
+     * Creates a source that plays back the given trace file on the wall clock once opened.
+     * @param path The path of the trace file, such as "gps.trace".
+     */
+    public MappedGpsSource(String path){
+        this(path, GpsTimers.realTime());
+    }
+
+    /**
+     * Creates a source that plays back the given trace file on a timer system once opened.
+     * @param path The path of the trace file, such as "gps.trace".
+     * @param timers The timer system to play back on.
+     */
+    public MappedGpsSource(String path, GpsTimerSystem timers){
+        super(timers);
+        this.path = path;
+    }
+
+    /**
+     * Maps the trace file and begins playback of each tracker.
+     */
+    public synchronized void open() throws IOException {
+        MappedByteBuffer map;
+        FileChannel channel = FileChannel.open(Paths.get(this.path), StandardOpenOption.READ);
+        try {
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            channel.close();
+        }
+        int trackers = GpsTraceFile.checkHeader(map.getInt(0), map.getInt(4), map.getInt(8));
+
+        long start = this.timers.time.sample() + 1000;
+        Stream<GpsEvent>[] streams = newArray(trackers);
+        for (int i = 0; i < trackers; i++) {
+            int entry = GpsTraceFile.HEADER_BYTES + i * GpsTraceFile.INDEX_ENTRY_BYTES;
+            long offset = map.getLong(entry);
+            int count = map.getInt(entry + 8);
+            streams[i] = count == 0 ? new Stream<GpsEvent>() : playback(start, new GpsInput(map, i, (int) offset, count));
+        }
+        setStreams(streams);
+    }
+
+    /**
+     * Stops playback.
+     */
+    public synchronized void close(){
+        stopPlayback();
+    }
+
+    /**
+     * Plays back the record at the cursor each time it fires, and schedules the next one.
+     */
+    private static class GpsInput implements Lambda1<Long, Tuple2<GpsEvent, Long>> {
+
+        private final ByteBuffer map;
+        private final String name;
+        private final int offset;
+        private final int count;
+        private int index;
+
+        GpsInput(ByteBuffer map, int id, int offset, int count){
+            this.map = map;
+            this.name = trackerName(id);
+            this.offset = offset;
+            this.count = count;
+        }
+
+        public Tuple2<GpsEvent, Long> apply(Long time) {
+            int pos = offset + index * GpsTraceFile.RECORD_BYTES;
+            index = (index + 1) % count;
+            long delay = (long) map.getDouble(offset + index * GpsTraceFile.RECORD_BYTES + 24);
+
+            GpsEvent ev = new GpsEvent(name, map.getDouble(pos), map.getDouble(pos + 8), map.getDouble(pos + 16), time);
+            return new Tuple2<GpsEvent, Long>(ev, time + delay * 1000);
+        }
+    }
+}
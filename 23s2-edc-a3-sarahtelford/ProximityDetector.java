@@ -0,0 +1,318 @@
+import java.util.*;
+import nz.sodium.*;
+
+/**
+ * Reports when pairs of trackers come within a given distance of each other and when
+ * they part again.
+ *
+ * Current positions are kept in a spatial hash whose cells are one radius high, so a
+ * fix only needs to be compared with trackers in the neighbouring cells and with the
+ * trackers it is already near, rather than with every other tracker. A larger exit
+ * radius can be given so that pairs hovering around the limit do not flicker.
+ */
+public class ProximityDetector {
+
+    public static final double METRES_PER_DEGREE = Math.toRadians(AnomalyFilter.EARTH_RADIUS);
+
+    private final Stream<List<GpsEncounter>> batches;
+    private final Stream<GpsEncounter> encounters;
+
+    /**
+     * Creates a detector for the given trackers.
+     * @param streams The per-tracker streams.
+     * @param radius The distance in metres at which an encounter starts and ends.
+     */
+    public ProximityDetector(Stream<GpsEvent>[] streams, double radius){
+        this(streams, radius, radius);
+    }
+
+    /**
+     * Creates a detector for the given trackers.
+     * @param streams The per-tracker streams.
+     * @param radius The distance in metres at which an encounter starts.
+     * @param exitRadius The distance in metres beyond which an encounter ends.
+     */
+    public ProximityDetector(Stream<GpsEvent>[] streams, double radius, double exitRadius){
+        final Index index = new Index(streams.length, radius, Math.max(radius, exitRadius));
+        List<Stream<List<GpsEncounter>>> outputs = new ArrayList<Stream<List<GpsEncounter>>>();
+        for (int i = 0; i < streams.length; i++) {
+            final int tracker = i;
+            outputs.add(streams[i].map(ev -> index.update(tracker, ev.latitude, ev.longitude, ev.time)));
+        }
+        this.batches = Stream.merge(outputs, (a, b) -> {
+            List<GpsEncounter> both = new ArrayList<GpsEncounter>(a);
+            both.addAll(b);
+            return both;
+        }).filter(b -> !b.isEmpty());
+        this.encounters = Operational.split(this.batches);
+    }
+
+    /**
+     * Returns the encounters started and ended by each fix.
+     */
+    public Stream<List<GpsEncounter>> batches(){
+        return this.batches;
+    }
+
+    /**
+     * Returns every encounter start and end, one per transaction.
+     */
+    public Stream<GpsEncounter> encounters(){
+        return this.encounters;
+    }
+
+    /**
+     * Current positions, the spatial hash over them and the pairs currently close.
+     */
+    static final class Index {
+
+        private static final long EMPTY = Long.MIN_VALUE;
+
+        private final double radius;
+        private final double exitRadius;
+        private final double cellDegrees;
+
+        // Per tracker
+        private final double[] lats;
+        private final double[] lons;
+        private final long[] cells;                 // The cell each tracker is in, EMPTY before its first fix
+        private final int[] next;                   // Doubly linked list of the trackers in each cell
+        private final int[] prev;
+        private final int[][] partners;             // Trackers currently close to each tracker
+        private final int[] partnerCounts;
+
+        // Open addressing table from cell to the first tracker in it
+        private long[] keys = newKeys(64);
+        private int[] heads = new int[64];
+        private int size;
+        private long candidates;                    // Trackers compared while searching for new encounters
+
+        Index(int trackers, double radius, double exitRadius){
+            this.radius = radius;
+            this.exitRadius = exitRadius;
+            this.cellDegrees = radius / METRES_PER_DEGREE;
+            this.lats = new double[trackers];
+            this.lons = new double[trackers];
+            this.cells = new long[trackers];
+            Arrays.fill(this.cells, EMPTY);
+            this.next = new int[trackers];
+            this.prev = new int[trackers];
+            this.partners = new int[trackers][];
+            this.partnerCounts = new int[trackers];
+        }
+
+        /**
+         * Moves a tracker and returns the encounters that started or ended as a result.
+         */
+        List<GpsEncounter> update(int t, double latitude, double longitude, long time){
+            this.lats[t] = latitude;
+            this.lons[t] = longitude;
+            int cy = (int) Math.floor(latitude / this.cellDegrees);
+            int cx = (int) Math.floor(longitude / this.cellDegrees);
+            long cell = key(cx, cy);
+            if (cell != this.cells[t]) {
+                if (this.cells[t] != EMPTY) {
+                    unlink(t);
+                }
+                link(t, cell);
+            }
+
+            List<GpsEncounter> changes = Collections.emptyList();
+            // Partners that have moved apart
+            for (int k = this.partnerCounts[t] - 1; k >= 0; k--) {
+                int p = this.partners[t][k];
+                double d = distance(t, p);
+                if (d > this.exitRadius) {
+                    removePartner(t, p);
+                    removePartner(p, t);
+                    changes = add(changes, new GpsEncounter(t, p, false, time, d));
+                }
+            }
+            // Trackers in the neighbouring cells that have come close. A radius spans more
+            // degrees of longitude away from the equator, so more columns are searched there.
+            double cos = Math.cos(Math.toRadians(Math.min(89.9, Math.abs(latitude) + this.cellDegrees)));
+            int columns = (int) Math.ceil(1 / cos);
+            for (int y = cy - 1; y <= cy + 1; y++) {
+                for (int x = cx - columns; x <= cx + columns; x++) {
+                    int slot = find(key(x, y));
+                    if (slot < 0) {
+                        continue;
+                    }
+                    for (int q = this.heads[slot]; q >= 0; q = this.next[q]) {
+                        this.candidates++;
+                        if (q == t || isPartner(t, q)) {
+                            continue;
+                        }
+                        double d = distance(t, q);
+                        if (d <= this.radius) {
+                            addPartner(t, q);
+                            addPartner(q, t);
+                            changes = add(changes, new GpsEncounter(t, q, true, time, d));
+                        }
+                    }
+                }
+            }
+            return changes;
+        }
+
+        /**
+         * Returns the number of trackers looked at so far while searching the neighbouring
+         * cells, which a brute force search would put at one less than the tracker count
+         * per update.
+         */
+        long candidates(){
+            return this.candidates;
+        }
+
+        /**
+         * Returns the trackers currently close to a tracker.
+         */
+        int[] partners(int t){
+            return this.partners[t] == null ? new int[0] : Arrays.copyOf(this.partners[t], this.partnerCounts[t]);
+        }
+
+        private static List<GpsEncounter> add(List<GpsEncounter> changes, GpsEncounter e){
+            if (changes.isEmpty()) {
+                changes = new ArrayList<GpsEncounter>();
+            }
+            changes.add(e);
+            return changes;
+        }
+
+        private double distance(int a, int b){
+            return AnomalyFilter.metres(this.lats[a], this.lons[a], 0, this.lats[b], this.lons[b], 0);
+        }
+
+        private boolean isPartner(int t, int p){
+            for (int k = 0; k < this.partnerCounts[t]; k++) {
+                if (this.partners[t][k] == p) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void addPartner(int t, int p){
+            if (this.partners[t] == null) {
+                this.partners[t] = new int[4];
+            } else if (this.partnerCounts[t] == this.partners[t].length) {
+                this.partners[t] = Arrays.copyOf(this.partners[t], 2 * this.partners[t].length);
+            }
+            this.partners[t][this.partnerCounts[t]++] = p;
+        }
+
+        private void removePartner(int t, int p){
+            for (int k = 0; k < this.partnerCounts[t]; k++) {
+                if (this.partners[t][k] == p) {
+                    this.partners[t][k] = this.partners[t][--this.partnerCounts[t]];
+                    return;
+                }
+            }
+        }
+
+        private void link(int t, long cell){
+            int slot = find(cell);
+            if (slot < 0) {
+                slot = insert(cell);
+            }
+            this.cells[t] = cell;
+            this.prev[t] = -1;
+            this.next[t] = this.heads[slot];
+            if (this.next[t] >= 0) {
+                this.prev[this.next[t]] = t;
+            }
+            this.heads[slot] = t;
+        }
+
+        private void unlink(int t){
+            if (this.next[t] >= 0) {
+                this.prev[this.next[t]] = this.prev[t];
+            }
+            if (this.prev[t] >= 0) {
+                this.next[this.prev[t]] = this.next[t];
+            } else {
+                int slot = find(this.cells[t]);
+                this.heads[slot] = this.next[t];
+                if (this.heads[slot] < 0) {
+                    delete(slot);
+                }
+            }
+            this.cells[t] = EMPTY;
+        }
+
+        private static long key(int x, int y){
+            return ((long) x << 32) | (y & 0xffffffffL);
+        }
+
+        private static long[] newKeys(int n){
+            long[] keys = new long[n];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+
+        private int home(long key){
+            key *= 0x9E3779B97F4A7C15L;
+            return (int) (key ^ (key >>> 32)) & (this.keys.length - 1);
+        }
+
+        private int find(long key){
+            int mask = this.keys.length - 1;
+            for (int i = home(key); this.keys[i] != EMPTY; i = (i + 1) & mask) {
+                if (this.keys[i] == key) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private int insert(long key){
+            if (2 * (this.size + 1) > this.keys.length) {
+                long[] keys = this.keys;
+                int[] heads = this.heads;
+                this.keys = newKeys(2 * keys.length);
+                this.heads = new int[2 * keys.length];
+                for (int j = 0; j < keys.length; j++) {
+                    if (keys[j] != EMPTY) {
+                        int i = free(keys[j]);
+                        this.keys[i] = keys[j];
+                        this.heads[i] = heads[j];
+                    }
+                }
+            }
+            int i = free(key);
+            this.keys[i] = key;
+            this.heads[i] = -1;
+            this.size++;
+            return i;
+        }
+
+        private int free(long key){
+            int mask = this.keys.length - 1;
+            int i = home(key);
+            while (this.keys[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        /**
+         * Empties a slot, shifting later entries of the same probe run back so that
+         * lookups never stop early at the gap.
+         */
+        private void delete(int gap){
+            int mask = this.keys.length - 1;
+            this.keys[gap] = EMPTY;
+            this.size--;
+            for (int i = (gap + 1) & mask; this.keys[i] != EMPTY; i = (i + 1) & mask) {
+                int h = home(this.keys[i]);
+                // Move the entry if its home is not between the gap and where it is now
+                if (((i - h) & mask) >= ((i - gap) & mask)) {
+                    this.keys[gap] = this.keys[i];
+                    this.heads[gap] = this.heads[i];
+                    this.keys[i] = EMPTY;
+                    gap = i;
+                }
+            }
+        }
+    }
+}
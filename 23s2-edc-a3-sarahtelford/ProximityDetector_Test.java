@@ -0,0 +1,107 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.*;
+import nz.sodium.*;
+
+public class ProximityDetector_Test {
+
+    // Degrees of latitude per metre
+    private static final double M = 1 / ProximityDetector.METRES_PER_DEGREE;
+
+    @Test
+    public void testEncounterStartsAndEnds() {
+        // Test that approaching and parting trackers produce one start and one end
+        StreamSink<GpsEvent> a = new StreamSink<GpsEvent>();
+        StreamSink<GpsEvent> b = new StreamSink<GpsEvent>();
+        @SuppressWarnings("unchecked")
+        Stream<GpsEvent>[] streams = new Stream[]{a, b};
+        ProximityDetector detector = new ProximityDetector(streams, 50);
+        List<GpsEncounter> encounters = new ArrayList<GpsEncounter>();
+        detector.encounters().listen(encounters::add);
+
+        a.send(new GpsEvent("Tracker0", 39.9, 116.3, 0, 0));
+        b.send(new GpsEvent("Tracker1", 39.9 + 200 * M, 116.3, 0, 1000));
+        assertTrue(encounters.isEmpty());
+        b.send(new GpsEvent("Tracker1", 39.9 + 30 * M, 116.3, 0, 2000));
+        b.send(new GpsEvent("Tracker1", 39.9 + 40 * M, 116.3, 0, 3000));
+        assertEquals(1, encounters.size());
+        GpsEncounter start = encounters.get(0);
+        assertTrue(start.started);
+        assertEquals(0, start.first);
+        assertEquals(1, start.second);
+        assertEquals(2000, start.time);
+        assertEquals(30, start.distance, 0.5);
+
+        a.send(new GpsEvent("Tracker0", 39.9 - 100 * M, 116.3, 0, 4000));
+        assertEquals(2, encounters.size());
+        assertFalse(encounters.get(1).started);
+        assertEquals(4000, encounters.get(1).time);
+    }
+
+    @Test
+    public void testExitRadiusPreventsFlicker() {
+        // Test that a pair hovering around the radius stays in one encounter
+        ProximityDetector.Index index = new ProximityDetector.Index(2, 50, 80);
+        index.update(0, 39.9, 116.3, 0);
+        assertEquals(1, index.update(1, 39.9 + 49 * M, 116.3, 1).size());
+        assertTrue(index.update(1, 39.9 + 60 * M, 116.3, 2).isEmpty());
+        assertTrue(index.update(1, 39.9 + 45 * M, 116.3, 3).isEmpty());
+        assertEquals(1, index.update(1, 39.9 + 90 * M, 116.3, 4).size());
+    }
+
+    @Test
+    public void testMatchesPairwiseScan() {
+        // Test that the spatial hash finds exactly the pairs a brute force scan finds,
+        // including across cell edges, at high latitude and as trackers move between cells
+        Random random = new Random(7);
+        int n = 400;
+        double radius = 100;
+        ProximityDetector.Index index = new ProximityDetector.Index(n, radius, radius);
+        double[] lats = new double[n], lons = new double[n];
+        boolean[] seen = new boolean[n];
+        for (int step = 0; step < 20000; step++) {
+            int t = random.nextInt(n);
+            double base = t % 2 == 0 ? 39.9 : 69.9;
+            lats[t] = base + random.nextDouble() * 0.02;
+            lons[t] = 116.3 + random.nextDouble() * 0.02;
+            seen[t] = true;
+            index.update(t, lats[t], lons[t], step);
+            if (step % 1000 != 999) {
+                continue;
+            }
+            // Pairs found since each tracker last moved must match the current positions
+            for (int i = 0; i < n; i++) {
+                Set<Integer> expected = new HashSet<Integer>();
+                Set<Integer> actual = new HashSet<Integer>();
+                for (int p : index.partners(i)) {
+                    actual.add(p);
+                }
+                for (int j = 0; j < n && seen[i]; j++) {
+                    if (j != i && seen[j] && AnomalyFilter.metres(lats[i], lons[i], 0, lats[j], lons[j], 0) <= radius) {
+                        expected.add(j);
+                    }
+                }
+                assertEquals("Tracker "+i, expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testScalesToManyTrackers() {
+        // Test that each update only looks at the trackers in nearby cells rather than all of them
+        int n = 50000;
+        int updates = 10 * n;
+        Random random = new Random(3);
+        ProximityDetector.Index index = new ProximityDetector.Index(n, 25, 25);
+        int encounters = 0;
+        for (int step = 0; step < updates; step++) {
+            int t = step % n;
+            encounters += index.update(t, 39.8 + random.nextDouble() * 0.3, 116.2 + random.nextDouble() * 0.4, step).size();
+        }
+        assertTrue(encounters > 0);
+        // About 15 cells of 25 m are searched, holding well under one tracker on average
+        double perUpdate = (double) index.candidates() / updates;
+        assertTrue(perUpdate+" trackers compared per update", perUpdate < 5);
+    }
+}
@@ -0,0 +1,112 @@
+import java.io.*;
+import java.net.*;
+
+/**
+ * Measures the UDP ingest end to end over loopback. Fixes from gps.dat are sent at a
+ * fixed rate, or as fast as possible, to a {@link SocketGpsSource} in the same process,
+ * and the run reports how many fixes per second were published on the tracker streams,
+ * how many the ingest dropped as malformed, and how many never arrived because the
+ * socket buffer overflowed. An unpaced sender outruns any receiver, so the sustainable
+ * rate is the highest paced rate with nothing lost.
+ */
+public class SocketGpsBenchmark {
+
+    /**
+     * The outcome of one run.
+     */
+    static final class Result {
+
+        final long sent;
+        final long received;            // Published on the tracker streams
+        final long dropped;             // Rejected by the ingest
+        final double seconds;           // From the first send to the last fix received
+
+        Result(long sent, long received, long dropped, double seconds){
+            this.sent = sent;
+            this.received = received;
+            this.dropped = dropped;
+            this.seconds = seconds;
+        }
+
+        /**
+         * Returns the number of fixes lost in transit.
+         */
+        long lost(){
+            return this.sent - this.received - this.dropped;
+        }
+
+        double fixesPerSecond(){
+            return this.received / this.seconds;
+        }
+
+        @Override
+        public String toString(){
+            return "Sent "+this.sent+", received "+this.received+" in "+this.seconds+"s ("+Math.round(fixesPerSecond())
+                   +" fixes/s), "+this.dropped+" dropped, "+lost()+" lost";
+        }
+    }
+
+    /**
+     * Sends the given number of fixes through a loopback ingest and waits for them to settle.
+     * @param traces The tracks to replay, one tracker each.
+     * @param fixes The number of fixes to send.
+     * @param rate The fixes to send per second, or 0 to send as fast as possible.
+     */
+    static Result run(GpsTrace[] traces, long fixes, long rate) throws IOException, InterruptedException {
+        SocketGpsSource ingest = new SocketGpsSource(0, traces.length);
+        ingest.open();
+        try {
+            InetSocketAddress target = new InetSocketAddress(InetAddress.getLoopbackAddress(), ingest.getLocalAddress().getPort());
+            GpsSocketSender sender = new GpsSocketSender(target);
+            long start = System.nanoTime();
+            for (long n = 0; n < fixes; n++) {
+                int id = (int) (n % traces.length);
+                GpsTrace trace = traces[id];
+                int i = (int) ((n / traces.length) % trace.size());
+                sender.send(id, trace.latitude(i), trace.longitude(i), trace.altitude(i), n);
+                if (rate > 0 && n % 64 == 63) {
+                    // Hold the sender back until it is on schedule
+                    sender.flush();
+                    long due = start + (n + 1) * 1000000000L / rate;
+                    while (System.nanoTime() < due) {
+                        Thread.onSpinWait();
+                    }
+                }
+            }
+            sender.close();
+
+            // Wait until every fix is accounted for, or nothing more has arrived for a while
+            long seen = -1;
+            long lastArrival = System.nanoTime();
+            while (true) {
+                long now = ingest.getReceived() + ingest.getDropped();
+                if (now != seen) {
+                    seen = now;
+                    lastArrival = System.nanoTime();
+                }
+                if (seen >= fixes || System.nanoTime() - lastArrival > 200000000L) {
+                    break;
+                }
+                Thread.sleep(1);
+            }
+            return new Result(fixes, ingest.getReceived(), ingest.getDropped(), (lastArrival - start) / 1e9);
+        } finally {
+            ingest.close();
+        }
+    }
+
+    /**
+     * Runs the benchmark a few times and prints each result.
+     * Usage: SocketGpsBenchmark [fixes/s, 0 for unpaced] [seconds] [runs]
+     */
+    public static void main(String[] args) throws Exception {
+        long rate = args.length > 0 ? Long.parseLong(args[0]) : 100000;
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 5;
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        long fixes = rate > 0 ? rate * seconds : 1000000;
+        GpsTrace[] traces = GpsTrace.load("gps.dat");
+        for (int r = 0; r < runs; r++) {
+            System.out.println(run(traces, fixes, rate));
+        }
+    }
+}
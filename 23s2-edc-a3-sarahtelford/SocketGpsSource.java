@@ -0,0 +1,179 @@
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import nz.sodium.time.*;
+
+/**
+ * Receives live GPS fixes over UDP and publishes them as one stream of GPS events per tracker.
+ *
+ * Each datagram carries one or more fixed-size big-endian records of
+ * {int tracker, long time, double latitude, double longitude, double altitude},
+ * where time is the fix time in milliseconds since the epoch. Records are decoded
+ * straight out of a reused direct buffer, so no intermediate arrays are created.
+ */
+public class SocketGpsSource extends AbstractGpsSource {
+
+    public static final int RECORD_BYTES = 4 + 4 * 8;      // Size of one encoded fix
+    public static final int MAX_DATAGRAM = 65507;           // Largest UDP payload
+
+    private final int port;
+    private final int trackers;
+    private final ByteBuffer buffer;
+    private DatagramChannel channel;
+    private Selector selector;
+    private Thread thread;
+    private volatile boolean running;
+    private volatile long received;                         // Fixes published
+    private volatile long dropped;                          // Fixes with an unknown tracker id or truncated record
+
+    /**
+     * Creates a source that will listen on the given local port once opened.
+     * @param port The UDP port to listen on, or 0 for any free port.
+     * @param trackers The number of trackers; fixes for other ids are dropped.
+     */
+    public SocketGpsSource(int port, int trackers){
+        this(port, trackers, GpsTimers.realTime());
+    }
+
+    /**
+     * Creates a source that will listen on the given local port once opened.
+     * @param port The UDP port to listen on, or 0 for any free port.
+     * @param trackers The number of trackers; fixes for other ids are dropped.
+     * @param timers The timer system consumers should measure timeouts on.
+     */
+    public SocketGpsSource(int port, int trackers, GpsTimerSystem timers){
+        super(timers);
+        this.port = port;
+        this.trackers = trackers;
+        this.buffer = ByteBuffer.allocateDirect(MAX_DATAGRAM);
+    }
+
+    /**
+     * Binds the socket and starts receiving on a background daemon thread.
+     */
+    public synchronized void open() throws IOException {
+        if (this.thread != null) {
+            return;
+        }
+        createStreams(this.trackers);
+        this.channel = DatagramChannel.open();
+        this.channel.setOption(StandardSocketOptions.SO_RCVBUF, 4 * 1024 * 1024);
+        this.channel.bind(new InetSocketAddress(this.port));
+        this.channel.configureBlocking(false);
+        this.selector = Selector.open();
+        this.channel.register(this.selector, SelectionKey.OP_READ);
+
+        this.running = true;
+        this.thread = new Thread(this::run, "SocketGpsSource");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Stops receiving and releases the socket.
+     */
+    public synchronized void close(){
+        if (this.thread == null) {
+            return;
+        }
+        this.running = false;
+        this.selector.wakeup();
+        try {
+            this.thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.thread = null;
+        try {
+            this.selector.close();
+            this.channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the local address the source is listening on.
+     */
+    public InetSocketAddress getLocalAddress() throws IOException {
+        return (InetSocketAddress) this.channel.getLocalAddress();
+    }
+
+    /**
+     * Returns the number of fixes published so far.
+     */
+    public long getReceived(){
+        return this.received;
+    }
+
+    /**
+     * Returns the number of fixes dropped so far.
+     */
+    public long getDropped(){
+        return this.dropped;
+    }
+
+    /**
+     * Listens for fixes and prints the receive rate once a second.
+     * Usage: SocketGpsSource [port] [trackers]
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 5555;
+        int trackers = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        SocketGpsSource source = new SocketGpsSource(port, trackers);
+        source.open();
+        System.out.println("Listening on "+source.getLocalAddress());
+        long last = 0;
+        while (true) {
+            Thread.sleep(1000);
+            long now = source.getReceived();
+            System.out.println((now - last)+" fixes/s, "+source.getDropped()+" dropped");
+            last = now;
+        }
+    }
+
+    private void run(){
+        try {
+            while (this.running) {
+                this.selector.select();
+                this.selector.selectedKeys().clear();
+                // Drain everything that is queued before selecting again
+                while (this.running && this.channel.receive(this.buffer) != null) {
+                    this.buffer.flip();
+                    decode(this.buffer);
+                    this.buffer.clear();
+                }
+            }
+        } catch (ClosedChannelException c) {
+            // Closed while receiving
+        } catch (IOException i) {
+            i.printStackTrace();
+        }
+    }
+
+    /**
+     * Publishes every complete record in the buffer.
+     */
+    private void decode(ByteBuffer buf){
+        int pos = buf.position();
+        int limit = buf.limit();
+        long published = 0;
+        long bad = 0;
+        for (; pos + RECORD_BYTES <= limit; pos += RECORD_BYTES) {
+            int id = buf.getInt(pos);
+            if (id < 0 || id >= this.trackers) {
+                bad++;
+                continue;
+            }
+            publish(id, buf.getDouble(pos + 12), buf.getDouble(pos + 20), buf.getDouble(pos + 28), buf.getLong(pos + 4));
+            published++;
+        }
+        if (pos < limit) {
+            bad++;
+        }
+        this.received += published;
+        this.dropped += bad;
+    }
+}
@@ -0,0 +1,89 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import nz.sodium.*;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SocketGpsSource_Test {
+
+    private static void awaitReceived(SocketGpsSource ingest, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (ingest.getReceived() + ingest.getDropped() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testFixesArePublishedPerTracker() throws Exception {
+        // Test that batched fixes from a local sender arrive on the right tracker streams
+        SocketGpsSource ingest = new SocketGpsSource(0, 3);
+        List<GpsEvent> tracker1 = new ArrayList<>();
+        List<GpsEvent> merged = new ArrayList<>();
+        ingest.open();
+        Listener m = ingest.getMergedStream().listen(ev -> { synchronized (merged) { merged.add(ev); } });
+        Stream<GpsEvent>[] streams = ingest.getEventStreams();
+        Listener l = streams[1].listen(ev -> { synchronized (tracker1) { tracker1.add(ev); } });
+
+        InetSocketAddress target = new InetSocketAddress(InetAddress.getLoopbackAddress(), ingest.getLocalAddress().getPort());
+        GpsSocketSender sender = new GpsSocketSender(target);
+        for (int i = 0; i < 300; i++) {
+            sender.send(i % 3, 39.9 + i * 1e-6, 116.3 - i * 1e-6, 100.0 + i, 1000L + i);
+        }
+        sender.close();
+        awaitReceived(ingest, 300);
+
+        l.unlisten();
+        m.unlisten();
+        ingest.close();
+        assertEquals(300, ingest.getReceived());
+        assertEquals(0, ingest.getDropped());
+        synchronized (merged) {
+            assertEquals(300, merged.size());
+        }
+        synchronized (tracker1) {
+            assertEquals(100, tracker1.size());
+            GpsEvent first = tracker1.get(0);
+            assertEquals("Tracker1", first.name);
+            assertEquals(39.9 + 1e-6, first.latitude, 0.0);
+            assertEquals(116.3 - 1e-6, first.longitude, 0.0);
+            assertEquals(101.0, first.altitude, 0.0);
+            assertEquals(1001L, first.time);
+        }
+    }
+
+    @Test
+    public void testUnknownTrackerIsDropped() throws Exception {
+        // Test that fixes for tracker ids outside the configured range are counted and dropped
+        SocketGpsSource ingest = new SocketGpsSource(0, 2);
+        ingest.open();
+
+        InetSocketAddress target = new InetSocketAddress(InetAddress.getLoopbackAddress(), ingest.getLocalAddress().getPort());
+        GpsSocketSender sender = new GpsSocketSender(target);
+        sender.send(0, 1.0, 2.0, 3.0);
+        sender.send(5, 1.0, 2.0, 3.0);
+        sender.send(-1, 1.0, 2.0, 3.0);
+        sender.close();
+        awaitReceived(ingest, 3);
+
+        ingest.close();
+        assertEquals(1, ingest.getReceived());
+        assertEquals(2, ingest.getDropped());
+    }
+
+    @Test
+    public void testBenchmarkAccountsForEveryFix() throws Exception {
+        // Test that a paced loopback run delivers every fix and reports its rate
+        GpsTrace trace = new GpsTrace(new double[]{39.9, 39.901}, new double[]{116.3, 116.3},
+                                      new double[]{100.0, 101.0}, new long[]{1000, 1000});
+        SocketGpsBenchmark.Result result = SocketGpsBenchmark.run(new GpsTrace[]{trace, trace}, 10000, 20000);
+        assertEquals(10000, result.sent);
+        assertEquals(10000, result.received);
+        assertEquals(0, result.dropped);
+        assertEquals(0, result.lost());
+        assertTrue(result.fixesPerSecond() > 0);
+    }
+}
@@ -0,0 +1,264 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import nz.sodium.*;
+import nz.sodium.time.*;
+
+/**
+ * Simulates live GPS data by streaming a {@link GpsTraceFile} from disk as it is played back.
+ *
+ * Opening only reads the header, so startup does not depend on the trace length. Each
+ * tracker keeps a small ring of upcoming records, which a background thread tops up one
+ * chunk at a time once it is half empty. Playback never reads the file itself: if it
+ * catches up with the ring, the firing is deferred by {@link #UNDERRUN_RETRY} milliseconds
+ * and counted as an underrun. If a read fails, each tracker plays what is already loaded and
+ * then stops, and the error is kept for {@link #getError}. Heap use is proportional to the number of trackers, and
+ * traces larger than 2 GB are supported.
+ */
+public class StreamingGpsSource extends AbstractGpsSource {
+
+    public static final int DEFAULT_CHUNK = 256;        // Records read per tracker at a time
+    public static final long UNDERRUN_RETRY = 10;       // Milliseconds to defer a firing whose record is not loaded
+
+    private final String path;
+    private final int chunk;
+    private final Executor prefetch;                    // Runs the reads, or null for a thread of our own
+    private FileChannel channel;
+    private ExecutorService prefetcher;
+    private volatile Executor reader;
+    private final AtomicLong underruns = new AtomicLong();
+    private volatile IOException error;                 // The read that failed, which stops playback
+
+    /**
+     * Creates a source that streams the given trace file on the wall clock once opened.
+     * @param path The path of the trace file, such as "gps.trace".
+     */
+    public StreamingGpsSource(String path){
+        this(path, GpsTimers.realTime(), DEFAULT_CHUNK);
+    }
+
+    /**
+     * Creates a source that streams the given trace file on a timer system once opened.
+     * @param path The path of the trace file, such as "gps.trace".
+     * @param timers The timer system to play back on.
+     * @param chunk The number of records to read per tracker at a time.
+     */
+    public StreamingGpsSource(String path, GpsTimerSystem timers, int chunk){
+        this(path, timers, chunk, null);
+    }
+
+    /**
+     * Creates a source that reads ahead on the given executor rather than its own thread.
+     * @param prefetch Runs each read; running them in place makes playback deterministic.
+     */
+    StreamingGpsSource(String path, GpsTimerSystem timers, int chunk, Executor prefetch){
+        super(timers);
+        this.path = path;
+        this.chunk = Math.max(1, chunk);
+        this.prefetch = prefetch;
+    }
+
+    /**
+     * Returns the number of firings deferred because their record had not been read yet.
+     */
+    public long getUnderruns(){
+        return this.underruns.get();
+    }
+
+    /**
+     * Returns the read error that stopped playback, or null if no read has failed.
+     */
+    public IOException getError(){
+        return this.error;
+    }
+
+    /**
+     * Reads the trace header, starts the prefetch thread and begins playback of each tracker.
+     */
+    public synchronized void open() throws IOException {
+        this.channel = FileChannel.open(Paths.get(this.path), StandardOpenOption.READ);
+        ByteBuffer header = ByteBuffer.allocate(GpsTraceFile.HEADER_BYTES);
+        readFully(header, 0);
+        int trackers = GpsTraceFile.checkHeader(header.getInt(0), header.getInt(4), header.getInt(8));
+        ByteBuffer index = ByteBuffer.allocate(trackers * GpsTraceFile.INDEX_ENTRY_BYTES);
+        readFully(index, GpsTraceFile.HEADER_BYTES);
+
+        this.error = null;
+        if (this.prefetch == null) {
+            this.prefetcher = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "StreamingGpsSource");
+                t.setDaemon(true);
+                return t;
+            });
+            this.reader = this.prefetcher;
+        } else {
+            this.reader = this.prefetch;
+        }
+
+        long start = this.timers.time.sample() + 1000;
+        Stream<GpsEvent>[] streams = newArray(trackers);
+        for (int i = 0; i < trackers; i++) {
+            long offset = index.getLong(i * GpsTraceFile.INDEX_ENTRY_BYTES);
+            int count = index.getInt(i * GpsTraceFile.INDEX_ENTRY_BYTES + 8);
+            if (count == 0) {
+                streams[i] = new Stream<GpsEvent>();
+                continue;
+            }
+            Track track = new Track(i, offset, count);
+            request(track);
+            streams[i] = playback(start, track);
+        }
+        setStreams(streams);
+    }
+
+    /**
+     * Stops playback and the prefetch thread, and closes the file.
+     */
+    public synchronized void close(){
+        stopPlayback();
+        if (this.prefetcher != null) {
+            this.prefetcher.shutdownNow();
+            this.prefetcher = null;
+        }
+        this.reader = null;
+        try {
+            if (this.channel != null) {
+                this.channel.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void readFully(ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            if (this.channel.read(buf, position + buf.position()) < 0) {
+                throw new EOFException("GPS trace is truncated");
+            }
+        }
+    }
+
+    /**
+     * Queues a top-up of the given track. After a failed read nothing more is read.
+     */
+    private void request(Track track){
+        Executor reader = this.reader;
+        if (this.error != null || reader == null) {
+            return;
+        }
+        try {
+            reader.execute(() -> {
+                try {
+                    track.fill();
+                } catch (ClosedChannelException e) {
+                    // Closed while reading
+                } catch (IOException e) {
+                    this.error = e;
+                    e.printStackTrace();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Closed
+        }
+    }
+
+    /**
+     * A ring of upcoming records for one tracker. Playback consumes from the head and the
+     * prefetch thread appends at the tail; record numbers keep counting past the end of the
+     * trace so it loops. A firing with no event is a deferral, or the end of playback once a
+     * read has failed.
+     */
+    private final class Track implements Lambda1<Long, Tuple2<GpsEvent, Long>> {
+
+        private final String name;
+        private final long offset;
+        private final int count;
+        private final int capacity;
+        private final double[] ring;                // Four values per record
+        private final ByteBuffer buffer;            // Read buffer, used while holding fillLock
+        private final Object fillLock = new Object();
+        private long head;                          // Number of the next record to play
+        private long tail;                          // Number of the record after the last one loaded
+        private boolean requested = true;           // A prefetch is queued
+
+        Track(int id, long offset, int count){
+            this.name = trackerName(id);
+            this.offset = offset;
+            this.count = count;
+            this.capacity = 2 * chunk;
+            this.ring = new double[4 * this.capacity];
+            this.buffer = ByteBuffer.allocateDirect(chunk * GpsTraceFile.RECORD_BYTES);
+        }
+
+        public Tuple2<GpsEvent, Long> apply(Long time){
+            GpsEvent ev = null;
+            long next;
+            boolean request = false;
+            synchronized (this) {
+                // The next record's delay is needed too, so two records must be loaded
+                if (this.tail - this.head < 2) {
+                    if (error != null) {
+                        return new Tuple2<GpsEvent, Long>(null, null);
+                    }
+                    underruns.incrementAndGet();
+                    next = time + UNDERRUN_RETRY;
+                } else {
+                    int r = (int) (this.head % this.capacity) * 4;
+                    int n = (int) ((this.head + 1) % this.capacity) * 4;
+                    ev = new GpsEvent(this.name, this.ring[r], this.ring[r + 1], this.ring[r + 2], time);
+                    next = time + (long) this.ring[n + 3] * 1000;
+                    this.head++;
+                }
+                if (!this.requested && this.tail - this.head <= this.capacity / 2) {
+                    this.requested = request = true;
+                }
+            }
+            if (request) {
+                request(this);
+            }
+            return new Tuple2<GpsEvent, Long>(ev, next);
+        }
+
+        /**
+         * Reads up to one chunk into the free part of the ring.
+         */
+        void fill() throws IOException {
+            synchronized (this.fillLock) {
+                long tail;
+                int free;
+                synchronized (this) {
+                    tail = this.tail;
+                    free = this.capacity - (int) (this.tail - this.head);
+                    this.requested = false;
+                }
+                int first = (int) (tail % this.count);
+                int n = Math.min(Math.min(free, chunk), this.count - first);
+                if (n <= 0) {
+                    return;
+                }
+                this.buffer.clear().limit(n * GpsTraceFile.RECORD_BYTES);
+                long position = this.offset + (long) first * GpsTraceFile.RECORD_BYTES;
+                while (this.buffer.hasRemaining()) {
+                    if (channel.read(this.buffer, position + this.buffer.position()) < 0) {
+                        throw new EOFException("GPS trace is truncated");
+                    }
+                }
+                // The slots written are free, so only publishing the new tail needs the lock
+                for (int i = 0; i < n; i++) {
+                    int r = (int) ((tail + i) % this.capacity) * 4;
+                    int b = i * GpsTraceFile.RECORD_BYTES;
+                    this.ring[r] = this.buffer.getDouble(b);
+                    this.ring[r + 1] = this.buffer.getDouble(b + 8);
+                    this.ring[r + 2] = this.buffer.getDouble(b + 16);
+                    this.ring[r + 3] = this.buffer.getDouble(b + 24);
+                }
+                synchronized (this) {
+                    this.tail = tail + n;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+import java.util.*;
+import nz.sodium.*;
+import nz.sodium.time.*;
+
+/**
+ * Generates GPS events for any number of trackers by moving each one on a random walk.
+ * Useful for load testing consumers without a recorded trace.
+ */
+public class SyntheticGpsSource extends AbstractGpsSource {
+
+    private final int trackers;
+    private final long period;
+    private final long seed;
+
+    /**
+     * Creates a generator that emits one event per tracker every period on the wall clock once opened.
+     * @param trackers The number of trackers to simulate.
+     * @param period The time between events for each tracker in milliseconds.
+     * @param seed The seed for the random walk, so runs can be repeated.
+     */
+    public SyntheticGpsSource(int trackers, long period, long seed){
+        this(trackers, period, seed, GpsTimers.realTime());
+    }
+
+    /**
+     * Creates a generator that emits one event per tracker every period on a timer system once opened.
+     * @param trackers The number of trackers to simulate.
+     * @param period The time between events for each tracker in milliseconds.
+     * @param seed The seed for the random walk, so runs can be repeated.
+     * @param timers The timer system to generate events on.
+     */
+    public SyntheticGpsSource(int trackers, long period, long seed, GpsTimerSystem timers){
+        super(timers);
+        this.trackers = trackers;
+        this.period = period;
+        this.seed = seed;
+    }
+
+    /**
+     * Places the trackers around Beijing and starts generating events.
+     */
+    public synchronized void open(){
+        long start = this.timers.time.sample() + this.period;
+        Stream<GpsEvent>[] streams = newArray(this.trackers);
+        for (int i = 0; i < this.trackers; i++) {
+            streams[i] = playback(start, new Walk(i, new Random(this.seed * 31 + i), this.period));
+        }
+        setStreams(streams);
+    }
+
+    /**
+     * Stops generating events.
+     */
+    public synchronized void close(){
+        stopPlayback();
+    }
+
+    /**
+     * Moves a tracker by a small random step each time it fires, keeping it within valid coordinates.
+     */
+    private static class Walk implements Lambda1<Long, Tuple2<GpsEvent, Long>> {
+
+        private final String name;
+        private final Random random;
+        private final long period;
+        private double latitude;
+        private double longitude;
+        private double altitude;
+
+        Walk(int id, Random random, long period){
+            this.name = trackerName(id);
+            this.random = random;
+            this.period = period;
+            this.latitude = 39.9 + random.nextGaussian() * 0.05;
+            this.longitude = 116.3 + random.nextGaussian() * 0.05;
+            this.altitude = 150.0 + random.nextDouble() * 100.0;
+        }
+
+        public Tuple2<GpsEvent, Long> apply(Long time){
+            this.latitude = Math.max(-90.0, Math.min(90.0, this.latitude + this.random.nextGaussian() * 1e-4));
+            this.longitude = Math.max(-180.0, Math.min(180.0, this.longitude + this.random.nextGaussian() * 1e-4));
+            this.altitude = Math.max(0.0, this.altitude + this.random.nextGaussian());
+            GpsEvent ev = new GpsEvent(this.name, this.latitude, this.longitude, this.altitude, time);
+            return new Tuple2<GpsEvent, Long>(ev, time + this.period);
+        }
+    }
+}
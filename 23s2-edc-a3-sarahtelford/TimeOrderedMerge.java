@@ -0,0 +1,253 @@
+import java.util.*;
+import nz.sodium.*;
+
+/**
+ * Merges the streams of several trackers into one stream ordered by event time.
+ *
+ * Arriving events are buffered in one queue per tracker. A heap keyed on the head of
+ * each queue performs a k-way merge up to the watermark, which trails the newest event
+ * time seen (or the optional clock) by a bounded lateness. Events older than the
+ * watermark when they arrive can no longer be placed in order and are emitted on
+ * {@link #late()} instead.
+ */
+public class TimeOrderedMerge {
+
+    private final Stream<List<GpsEvent>> batches;
+    private final Stream<GpsEvent> events;
+    private final Stream<GpsEvent> late;
+    private final Cell<Long> watermark;
+
+    /**
+     * Creates a merge whose watermark only advances as events arrive.
+     * @param streams The per-tracker streams, each of which must be in time order.
+     * @param maxLateness How far in milliseconds an event may trail the newest event seen.
+     */
+    public TimeOrderedMerge(Stream<GpsEvent>[] streams, long maxLateness){
+        this(streams, maxLateness, new Stream<Long>());
+    }
+
+    /**
+     * Creates a merge whose watermark also advances with a clock, so buffered events are
+     * released even when every tracker goes quiet.
+     * @param streams The per-tracker streams, each of which must be in time order.
+     * @param maxLateness How far in milliseconds an event may trail the newest event seen.
+     * @param clock A stream of the current time in milliseconds since the epoch.
+     */
+    public TimeOrderedMerge(Stream<GpsEvent>[] streams, long maxLateness, Stream<Long> clock){
+        List<Stream<Input>> inputs = new ArrayList<Stream<Input>>();
+        for (int i = 0; i < streams.length; i++) {
+            final int tracker = i;
+            inputs.add(streams[i].map(ev -> new Input(tracker, ev)));
+        }
+        inputs.add(clock.map(t -> new Input(t)));
+        Stream<Input> arrivals = Stream.merge(inputs, Input::combine);
+
+        // The buffer is private to this stage, and map runs exactly once per arrival
+        final Buffer buffer = new Buffer(streams.length, maxLateness);
+        Stream<Output> outputs = arrivals.map(buffer::accept);
+
+        this.batches = outputs.map(o -> o.released).filter(b -> !b.isEmpty());
+        this.events = Operational.split(this.batches);
+        this.late = Operational.split(outputs.map(o -> o.late).filter(l -> !l.isEmpty()));
+        this.watermark = outputs.map(o -> o.watermark).hold(Long.MIN_VALUE);
+    }
+
+    /**
+     * Returns the events released by each watermark advance, in time order.
+     */
+    public Stream<List<GpsEvent>> batches(){
+        return this.batches;
+    }
+
+    /**
+     * Returns every released event in time order, one per transaction.
+     */
+    public Stream<GpsEvent> events(){
+        return this.events;
+    }
+
+    /**
+     * Returns events that arrived after the watermark had passed their time.
+     */
+    public Stream<GpsEvent> late(){
+        return this.late;
+    }
+
+    /**
+     * Returns the current watermark in milliseconds since the epoch. Every event at or
+     * before this time has been released.
+     */
+    public Cell<Long> watermark(){
+        return this.watermark;
+    }
+
+    /**
+     * Events and clock ticks arriving in one transaction.
+     */
+    private static final class Input {
+
+        final int[] trackers;
+        final GpsEvent[] events;
+        final long clock;
+
+        Input(int tracker, GpsEvent ev){
+            this(new int[]{tracker}, new GpsEvent[]{ev}, Long.MIN_VALUE);
+        }
+
+        Input(long clock){
+            this(new int[0], new GpsEvent[0], clock);
+        }
+
+        private Input(int[] trackers, GpsEvent[] events, long clock){
+            this.trackers = trackers;
+            this.events = events;
+            this.clock = clock;
+        }
+
+        static Input combine(Input a, Input b){
+            int[] trackers = Arrays.copyOf(a.trackers, a.trackers.length + b.trackers.length);
+            System.arraycopy(b.trackers, 0, trackers, a.trackers.length, b.trackers.length);
+            GpsEvent[] events = Arrays.copyOf(a.events, a.events.length + b.events.length);
+            System.arraycopy(b.events, 0, events, a.events.length, b.events.length);
+            return new Input(trackers, events, Math.max(a.clock, b.clock));
+        }
+    }
+
+    /**
+     * The result of one arrival.
+     */
+    private static final class Output {
+
+        final List<GpsEvent> released;
+        final List<GpsEvent> late;
+        final long watermark;
+
+        Output(List<GpsEvent> released, List<GpsEvent> late, long watermark){
+            this.released = released;
+            this.late = late;
+            this.watermark = watermark;
+        }
+    }
+
+    /**
+     * Per-tracker queues and the heap of queue heads.
+     */
+    private static final class Buffer {
+
+        private final ArrayDeque<GpsEvent>[] queues;
+        private final int[] heap;               // Tracker indexes ordered by queue head time
+        private int heapSize;
+        private final long maxLateness;
+        private long newest = Long.MIN_VALUE;
+        private long watermark = Long.MIN_VALUE;
+
+        @SuppressWarnings("unchecked")
+        Buffer(int trackers, long maxLateness){
+            this.queues = (ArrayDeque<GpsEvent>[]) new ArrayDeque[trackers];
+            for (int i = 0; i < trackers; i++) {
+                this.queues[i] = new ArrayDeque<GpsEvent>();
+            }
+            this.heap = new int[trackers];
+            this.maxLateness = maxLateness;
+        }
+
+        Output accept(Input in){
+            List<GpsEvent> late = Collections.emptyList();
+            for (int i = 0; i < in.events.length; i++) {
+                GpsEvent ev = in.events[i];
+                if (ev.time <= this.watermark) {
+                    if (late.isEmpty()) {
+                        late = new ArrayList<GpsEvent>();
+                    }
+                    late.add(ev);
+                    continue;
+                }
+                enqueue(in.trackers[i], ev);
+                this.newest = Math.max(this.newest, ev.time);
+            }
+            long target = Math.max(this.newest, in.clock);
+            if (target != Long.MIN_VALUE) {
+                this.watermark = Math.max(this.watermark, target - this.maxLateness);
+            }
+
+            List<GpsEvent> released = Collections.emptyList();
+            while (this.heapSize > 0 && this.queues[this.heap[0]].peekFirst().time <= this.watermark) {
+                int tracker = this.heap[0];
+                if (released.isEmpty()) {
+                    released = new ArrayList<GpsEvent>();
+                }
+                released.add(this.queues[tracker].pollFirst());
+                if (this.queues[tracker].isEmpty()) {
+                    this.heap[0] = this.heap[--this.heapSize];
+                }
+                siftDown(0);
+            }
+            return new Output(released, late, this.watermark);
+        }
+
+        private void enqueue(int tracker, GpsEvent ev){
+            ArrayDeque<GpsEvent> q = this.queues[tracker];
+            if (q.isEmpty()) {
+                q.addLast(ev);
+                this.heap[this.heapSize] = tracker;
+                siftUp(this.heapSize++);
+            } else if (q.peekLast().time <= ev.time) {
+                q.addLast(ev);
+            } else {
+                // Out of order within one tracker; rare, so re-sort that queue
+                ArrayList<GpsEvent> sorted = new ArrayList<GpsEvent>(q);
+                sorted.add(ev);
+                sorted.sort((a, b) -> Long.compare(a.time, b.time));
+                q.clear();
+                q.addAll(sorted);
+                for (int i = 0; i < this.heapSize; i++) {
+                    if (this.heap[i] == tracker) {
+                        siftUp(i);
+                        break;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Orders heap entries by head time, then by tracker so ties are deterministic.
+         */
+        private boolean before(int a, int b){
+            long ta = this.queues[this.heap[a]].peekFirst().time;
+            long tb = this.queues[this.heap[b]].peekFirst().time;
+            return ta < tb || (ta == tb && this.heap[a] < this.heap[b]);
+        }
+
+        private void siftUp(int i){
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!before(i, parent)) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i){
+            while (true) {
+                int left = 2 * i + 1;
+                if (left >= this.heapSize) {
+                    break;
+                }
+                int child = left + 1 < this.heapSize && before(left + 1, left) ? left + 1 : left;
+                if (!before(child, i)) {
+                    break;
+                }
+                swap(i, child);
+                i = child;
+            }
+        }
+
+        private void swap(int a, int b){
+            int t = this.heap[a];
+            this.heap[a] = this.heap[b];
+            this.heap[b] = t;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import nz.sodium.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TimeOrderedMerge_Test {
+
+    @SuppressWarnings("unchecked")
+    private static StreamSink<GpsEvent>[] sinks(int n) {
+        StreamSink<GpsEvent>[] sinks = (StreamSink<GpsEvent>[]) new StreamSink[n];
+        for (int i = 0; i < n; i++) {
+            sinks[i] = new StreamSink<GpsEvent>();
+        }
+        return sinks;
+    }
+
+    private static GpsEvent at(String name, long time) {
+        return new GpsEvent(name, 0.0, 0.0, 0.0, time);
+    }
+
+    @Test
+    public void testEventsAreReleasedInTimeOrder() {
+        // Test that interleaved arrivals come out sorted once the watermark passes them
+        StreamSink<GpsEvent>[] sinks = sinks(3);
+        TimeOrderedMerge merge = new TimeOrderedMerge(sinks, 100);
+        List<Long> times = new ArrayList<>();
+        Listener l = merge.events().listen(ev -> times.add(ev.time));
+
+        sinks[0].send(at("Tracker0", 1000));
+        sinks[1].send(at("Tracker1", 950));
+        sinks[2].send(at("Tracker2", 1020));
+        sinks[1].send(at("Tracker1", 1010));
+        assertTrue(times.isEmpty());
+
+        sinks[0].send(at("Tracker0", 1200));
+        l.unlisten();
+        assertEquals(List.of(950L, 1000L, 1010L, 1020L), times);
+        assertEquals(Long.valueOf(1100), merge.watermark().sample());
+    }
+
+    @Test
+    public void testLateEventsAreDiverted() {
+        // Test that an event older than the watermark goes to the late stream
+        StreamSink<GpsEvent>[] sinks = sinks(2);
+        TimeOrderedMerge merge = new TimeOrderedMerge(sinks, 50);
+        List<GpsEvent> released = new ArrayList<>();
+        List<GpsEvent> late = new ArrayList<>();
+        Listener l1 = merge.events().listen(released::add);
+        Listener l2 = merge.late().listen(late::add);
+
+        sinks[0].send(at("Tracker0", 1000));
+        sinks[0].send(at("Tracker0", 2000));
+        sinks[1].send(at("Tracker1", 1500));
+        l1.unlisten();
+        l2.unlisten();
+
+        assertEquals(1, released.size());
+        assertEquals(1, late.size());
+        assertEquals("Tracker1", late.get(0).name);
+    }
+
+    @Test
+    public void testBatchesAndClock() {
+        // Test that a clock tick flushes quiet trackers as one ordered batch, ties by tracker
+        StreamSink<GpsEvent>[] sinks = sinks(2);
+        StreamSink<Long> clock = new StreamSink<Long>();
+        TimeOrderedMerge merge = new TimeOrderedMerge(sinks, 200, clock);
+        List<List<GpsEvent>> batches = new ArrayList<>();
+        Listener l = merge.batches().listen(batches::add);
+
+        sinks[1].send(at("Tracker1", 500));
+        sinks[0].send(at("Tracker0", 500));
+        sinks[0].send(at("Tracker0", 400));
+        clock.send(700L);
+        l.unlisten();
+
+        assertEquals(1, batches.size());
+        List<GpsEvent> batch = batches.get(0);
+        assertEquals(3, batch.size());
+        assertEquals(400, batch.get(0).time);
+        assertEquals("Tracker0", batch.get(1).name);
+        assertEquals("Tracker1", batch.get(2).name);
+    }
+}
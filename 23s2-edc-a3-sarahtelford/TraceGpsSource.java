@@ -0,0 +1,90 @@
+import java.util.*;
+import nz.sodium.*;
+import nz.sodium.time.*;
+
+/**
+ * Simulates live GPS data by looping over in-memory traces. Each tracker replays a
+ * {@link GpsTrace} through its own cursor, so one loaded trace can back any number of
+ * trackers and sources, for example the same track offset in time.
+ */
+public class TraceGpsSource extends AbstractGpsSource {
+
+    private final ArrayList<GpsTrace> traces = new ArrayList<GpsTrace>();
+    private final ArrayList<Long> offsets = new ArrayList<Long>();
+
+    /**
+     * Creates a source with no trackers; add them with {@link #addTracker}.
+     * @param timers The timer system to play back on.
+     */
+    public TraceGpsSource(GpsTimerSystem timers){
+        super(timers);
+    }
+
+    /**
+     * Creates a source with one tracker per trace, all starting together.
+     * @param traces The traces to play back.
+     * @param timers The timer system to play back on.
+     */
+    public TraceGpsSource(GpsTrace[] traces, GpsTimerSystem timers){
+        super(timers);
+        for (GpsTrace trace : traces) {
+            addTracker(trace, 0);
+        }
+    }
+
+    /**
+     * Adds a tracker that replays the given trace. Must be called before {@link #open()}.
+     * @param trace The trace to play back.
+     * @param offset How long after the other trackers this one starts, in milliseconds.
+     * @return The index of the new tracker.
+     */
+    public synchronized int addTracker(GpsTrace trace, long offset){
+        this.traces.add(trace);
+        this.offsets.add(offset);
+        return this.traces.size() - 1;
+    }
+
+    /**
+     * Begins playback of every tracker one second from now.
+     */
+    public synchronized void open() throws java.io.IOException {
+        long start = this.timers.time.sample() + 1000;
+        Stream<GpsEvent>[] streams = newArray(this.traces.size());
+        for (int i = 0; i < streams.length; i++) {
+            GpsTrace trace = this.traces.get(i);
+            streams[i] = trace.size() == 0 ? new Stream<GpsEvent>() : playback(start + this.offsets.get(i), new GpsInput(i, trace));
+        }
+        setStreams(streams);
+    }
+
+    /**
+     * Stops playback.
+     */
+    public synchronized void close(){
+        stopPlayback();
+    }
+
+    /**
+     * A cursor over one trace that plays the current record each time it fires and
+     * schedules the next, looping back to the start at the end.
+     */
+    static class GpsInput implements Lambda1<Long, Tuple2<GpsEvent, Long>> {
+
+        private final String name;
+        private final GpsTrace trace;
+        private int index;
+
+        GpsInput(int id, GpsTrace trace){
+            this.name = trackerName(id);
+            this.trace = trace;
+        }
+
+        public Tuple2<GpsEvent, Long> apply(Long time){
+            int i = this.index;
+            this.index = i + 1 == this.trace.size() ? 0 : i + 1;
+
+            GpsEvent ev = new GpsEvent(this.name, this.trace.latitude(i), this.trace.longitude(i), this.trace.altitude(i), time);
+            return new Tuple2<GpsEvent, Long>(ev, time + this.trace.delay(this.index));
+        }
+    }
+}
@@ -0,0 +1,331 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.List;
+import javax.swing.*;
+import javax.swing.Timer;
+import nz.sodium.*;
+
+/**
+ * Draws the latest position of every tracker, with a short trail of its previous fixes,
+ * over a lat/lon viewport.
+ *
+ * Fixes only record which part of the map changed. Once per frame a Swing timer redraws
+ * just those regions into a back buffer and asks Swing to repaint them, and painting
+ * copies the buffer to the screen. Regions are kept in lat/lon so they stay valid if the
+ * view is resized between a fix and the next frame. Each trail's bounding box is kept as
+ * fixes arrive, so a frame only projects the boxes once and the trails that need drawing.
+ */
+public class TrackerMapCanvas extends JComponent {
+
+    public static final int TRAIL = 16;             // Fixes drawn per tracker, including the latest
+    public static final int FRAME_MILLIS = 16;      // About 60 frames per second
+
+    private static final int MAX_REGIONS = 32;      // More than this are merged into one
+    private static final int MARKER = 6;            // Size of a position marker in pixels
+
+    private final double north, west, south, east;
+    private final Timer timer;
+
+    // Trails, written by update and read by frame while holding the lock
+    private double[] lats = new double[0];          // TRAIL entries per tracker
+    private double[] lons = new double[0];
+    private int[] heads = new int[0];               // Index of the latest fix in each trail
+    private int[] counts = new int[0];              // Fixes in each trail
+    private double[] boxes = new double[0];         // North, west, south, east of each trail
+    private Color[] colors = new Color[0];
+    private int[] screenBoxes = new int[0];         // Boxes projected for the current frame
+    private final int[] xs = new int[TRAIL];
+    private final int[] ys = new int[TRAIL];
+
+    // Changed areas as north, west, south, east
+    private double[] regions = new double[4 * MAX_REGIONS];
+    private int regionCount;
+    private boolean redrawAll = true;
+
+    private BufferedImage buffer;
+
+    /**
+     * Creates a map view.
+     * @param north The latitude at the top edge.
+     * @param west The longitude at the left edge.
+     * @param south The latitude at the bottom edge.
+     * @param east The longitude at the right edge.
+     */
+    public TrackerMapCanvas(double north, double west, double south, double east){
+        this.north = north;
+        this.west = west;
+        this.south = south;
+        this.east = east;
+        setOpaque(true);
+        setBackground(Color.WHITE);
+        setPreferredSize(new Dimension(600, 600));
+        this.timer = new Timer(FRAME_MILLIS, e -> frame());
+    }
+
+    public void addNotify(){
+        super.addNotify();
+        this.timer.start();
+    }
+
+    public void removeNotify(){
+        this.timer.stop();
+        super.removeNotify();
+    }
+
+    /**
+     * Shows the events of each stream as the tracker with the same index.
+     * @return The listener, to unlisten when the view is no longer needed.
+     */
+    public Listener listen(Stream<GpsEvent>[] streams){
+        Listener l = new Listener();
+        for (int i = 0; i < streams.length; i++) {
+            final int tracker = i;
+            l = l.append(streams[i].listen(ev -> update(tracker, ev.latitude, ev.longitude)));
+        }
+        return l;
+    }
+
+    /**
+     * Moves a tracker to a new position. Safe to call from any thread.
+     */
+    public synchronized void update(int tracker, double latitude, double longitude){
+        ensureTracker(tracker);
+        // Adding a fix may drop the oldest, so the whole trail area changes
+        int b = 4 * tracker;
+        if (this.counts[tracker] == 0) {
+            addRegion(latitude, longitude, latitude, longitude);
+        } else {
+            addRegion(Math.max(this.boxes[b], latitude), Math.min(this.boxes[b + 1], longitude),
+                      Math.min(this.boxes[b + 2], latitude), Math.max(this.boxes[b + 3], longitude));
+        }
+        int head = (this.heads[tracker] + 1) % TRAIL;
+        this.heads[tracker] = head;
+        this.lats[tracker * TRAIL + head] = latitude;
+        this.lons[tracker * TRAIL + head] = longitude;
+        this.counts[tracker] = Math.min(TRAIL, this.counts[tracker] + 1);
+        updateBox(tracker);
+    }
+
+    /**
+     * Removes a tracker from the map, such as when it has gone stale.
+     */
+    public synchronized void clear(int tracker){
+        if (tracker >= this.counts.length || this.counts[tracker] == 0) {
+            return;
+        }
+        int b = 4 * tracker;
+        addRegion(this.boxes[b], this.boxes[b + 1], this.boxes[b + 2], this.boxes[b + 3]);
+        this.counts[tracker] = 0;
+    }
+
+    /**
+     * Returns the index of the k-th fix in a tracker's trail, oldest first.
+     */
+    private int trailIndex(int tracker, int k){
+        return tracker * TRAIL + (this.heads[tracker] - this.counts[tracker] + 1 + k + TRAIL) % TRAIL;
+    }
+
+    /**
+     * Recomputes the bounding box of a tracker's trail.
+     */
+    private void updateBox(int tracker){
+        double n = -Double.MAX_VALUE, s = Double.MAX_VALUE, w = Double.MAX_VALUE, e = -Double.MAX_VALUE;
+        for (int k = 0; k < this.counts[tracker]; k++) {
+            int i = trailIndex(tracker, k);
+            n = Math.max(n, this.lats[i]);
+            s = Math.min(s, this.lats[i]);
+            w = Math.min(w, this.lons[i]);
+            e = Math.max(e, this.lons[i]);
+        }
+        int b = 4 * tracker;
+        this.boxes[b] = n;
+        this.boxes[b + 1] = w;
+        this.boxes[b + 2] = s;
+        this.boxes[b + 3] = e;
+    }
+
+    private void ensureTracker(int tracker){
+        if (tracker < this.counts.length) {
+            return;
+        }
+        int n = Math.max(tracker + 1, 2 * this.counts.length);
+        this.lats = Arrays.copyOf(this.lats, n * TRAIL);
+        this.lons = Arrays.copyOf(this.lons, n * TRAIL);
+        this.heads = Arrays.copyOf(this.heads, n);
+        this.counts = Arrays.copyOf(this.counts, n);
+        this.boxes = Arrays.copyOf(this.boxes, 4 * n);
+        this.screenBoxes = new int[4 * n];
+        this.colors = Arrays.copyOf(this.colors, n);
+        for (int i = 0; i < n; i++) {
+            if (this.colors[i] == null) {
+                // Golden ratio steps spread the hues of neighbouring ids apart
+                this.colors[i] = Color.getHSBColor((i * 0.618034f) % 1, 0.9f, 0.8f);
+            }
+        }
+    }
+
+    private void addRegion(double n, double w, double s, double e){
+        if (this.redrawAll) {
+            return;
+        }
+        if (this.regionCount == MAX_REGIONS) {
+            // Too many to track separately, so grow the first region to cover them all
+            for (int r = 1; r < this.regionCount; r++) {
+                unionRegion(0, this.regions[4 * r], this.regions[4 * r + 1], this.regions[4 * r + 2], this.regions[4 * r + 3]);
+            }
+            this.regionCount = 1;
+            unionRegion(0, n, w, s, e);
+            return;
+        }
+        int r = 4 * this.regionCount++;
+        this.regions[r] = n;
+        this.regions[r + 1] = w;
+        this.regions[r + 2] = s;
+        this.regions[r + 3] = e;
+    }
+
+    private void unionRegion(int r, double n, double w, double s, double e){
+        this.regions[4 * r] = Math.max(this.regions[4 * r], n);
+        this.regions[4 * r + 1] = Math.min(this.regions[4 * r + 1], w);
+        this.regions[4 * r + 2] = Math.min(this.regions[4 * r + 2], s);
+        this.regions[4 * r + 3] = Math.max(this.regions[4 * r + 3], e);
+    }
+
+    private int screenX(double longitude){
+        return (int) Math.round((longitude - this.west) / (this.east - this.west) * getWidth());
+    }
+
+    private int screenY(double latitude){
+        return (int) Math.round((this.north - latitude) / (this.north - this.south) * getHeight());
+    }
+
+    /**
+     * Redraws the regions changed since the last frame into the back buffer and schedules
+     * them to be repainted. Runs on the event dispatch thread.
+     * @return The screen areas redrawn.
+     */
+    List<Rectangle> frame(){
+        int width = getWidth(), height = getHeight();
+        if (width <= 0 || height <= 0) {
+            return Collections.emptyList();
+        }
+        List<Rectangle> dirty = new ArrayList<Rectangle>();
+        synchronized (this) {
+            if (this.buffer == null || this.buffer.getWidth() != width || this.buffer.getHeight() != height) {
+                this.buffer = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+                this.redrawAll = true;
+            }
+            Rectangle all = new Rectangle(0, 0, width, height);
+            if (this.redrawAll) {
+                dirty.add(all);
+            } else {
+                for (int r = 0; r < this.regionCount; r++) {
+                    int x0 = screenX(this.regions[4 * r + 1]), x1 = screenX(this.regions[4 * r + 3]);
+                    int y0 = screenY(this.regions[4 * r]), y1 = screenY(this.regions[4 * r + 2]);
+                    Rectangle rect = new Rectangle(x0 - MARKER, y0 - MARKER, x1 - x0 + 2 * MARKER + 1, y1 - y0 + 2 * MARKER + 1)
+                        .intersection(all);
+                    if (!rect.isEmpty()) {
+                        dirty.add(rect);
+                    }
+                }
+            }
+            this.regionCount = 0;
+            this.redrawAll = false;
+            if (!dirty.isEmpty()) {
+                redraw(dirty);
+            }
+        }
+        for (Rectangle rect : dirty) {
+            repaint(rect);
+        }
+        return dirty;
+    }
+
+    /**
+     * Clears the given areas of the back buffer and draws every tracker that overlaps them.
+     */
+    private void redraw(List<Rectangle> dirty){
+        // Project each trail's box once, padded by the marker, for the overlap tests below
+        int trackers = this.counts.length;
+        for (int t = 0; t < trackers; t++) {
+            if (this.counts[t] > 0) {
+                int b = 4 * t;
+                this.screenBoxes[b] = screenX(this.boxes[b + 1]) - MARKER;
+                this.screenBoxes[b + 1] = screenY(this.boxes[b]) - MARKER;
+                this.screenBoxes[b + 2] = screenX(this.boxes[b + 3]) + MARKER;
+                this.screenBoxes[b + 3] = screenY(this.boxes[b + 2]) + MARKER;
+            }
+        }
+        Graphics2D g = this.buffer.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            for (Rectangle rect : dirty) {
+                g.setClip(rect);
+                g.setColor(getBackground());
+                g.fillRect(rect.x, rect.y, rect.width, rect.height);
+                for (int t = 0; t < trackers; t++) {
+                    int count = this.counts[t];
+                    int b = 4 * t;
+                    if (count == 0 || this.screenBoxes[b + 2] < rect.x || this.screenBoxes[b] > rect.x + rect.width
+                        || this.screenBoxes[b + 3] < rect.y || this.screenBoxes[b + 1] > rect.y + rect.height) {
+                        continue;
+                    }
+                    // Oldest fix first, so the trail ends at the marker
+                    for (int k = 0; k < count; k++) {
+                        int i = trailIndex(t, k);
+                        this.xs[k] = screenX(this.lons[i]);
+                        this.ys[k] = screenY(this.lats[i]);
+                    }
+                    g.setColor(this.colors[t]);
+                    g.drawPolyline(this.xs, this.ys, count);
+                    g.fillOval(this.xs[count - 1] - MARKER / 2, this.ys[count - 1] - MARKER / 2, MARKER, MARKER);
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /**
+     * Returns the colour of the back buffer at a point, for tests.
+     */
+    synchronized int bufferRGB(int x, int y){
+        return this.buffer.getRGB(x, y);
+    }
+
+    protected void paintComponent(Graphics g){
+        BufferedImage image;
+        synchronized (this) {
+            image = this.buffer;
+        }
+        if (image == null) {
+            g.setColor(getBackground());
+            g.fillRect(0, 0, getWidth(), getHeight());
+            return;
+        }
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            g.drawImage(image, 0, 0, null);
+        } else {
+            g.drawImage(image, clip.x, clip.y, clip.x + clip.width, clip.y + clip.height,
+                        clip.x, clip.y, clip.x + clip.width, clip.y + clip.height, null);
+        }
+    }
+
+    /**
+     * Shows every tracker in gps.dat over Beijing as it is played back.
+     */
+    public static void main(String[] args){
+        GpsService serv = new GpsService();
+        TrackerMapCanvas map = new TrackerMapCanvas(40.2, 116.1, 39.7, 116.7);
+        map.listen(serv.getEventStreams());
+        SwingUtilities.invokeLater(() -> {
+            JFrame frame = new JFrame("Tracker Map");
+            frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+            frame.add(map);
+            frame.pack();
+            frame.setVisible(true);
+        });
+    }
+}
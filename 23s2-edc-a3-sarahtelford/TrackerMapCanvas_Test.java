@@ -0,0 +1,95 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.util.List;
+
+public class TrackerMapCanvas_Test {
+
+    private static final int WHITE = Color.WHITE.getRGB();
+
+    private static TrackerMapCanvas canvas() {
+        // One degree square viewport drawn at 100 pixels per degree
+        TrackerMapCanvas map = new TrackerMapCanvas(40, 116, 39, 117);
+        map.setSize(100, 100);
+        return map;
+    }
+
+    @Test
+    public void testFirstFrameRedrawsEverything() {
+        // Test that the back buffer is drawn in full the first time
+        TrackerMapCanvas map = canvas();
+        map.update(0, 39.5, 116.5);
+        List<Rectangle> dirty = map.frame();
+        assertEquals(1, dirty.size());
+        assertEquals(new Rectangle(0, 0, 100, 100), dirty.get(0));
+        assertNotEquals(WHITE, map.bufferRGB(50, 50));
+        assertEquals(WHITE, map.bufferRGB(10, 10));
+    }
+
+    @Test
+    public void testOnlyChangedRegionsAreRedrawn() {
+        // Test that a fix redraws a small area around it and leaves the rest alone
+        TrackerMapCanvas map = canvas();
+        map.update(0, 39.5, 116.5);
+        map.frame();
+        map.update(1, 39.9, 116.1);
+        List<Rectangle> dirty = map.frame();
+        assertEquals(1, dirty.size());
+        Rectangle r = dirty.get(0);
+        assertTrue(r.contains(10, 10));
+        assertFalse(r.contains(50, 50));
+        assertTrue(r.width < 20 && r.height < 20);
+        assertNotEquals(WHITE, map.bufferRGB(10, 10));
+        assertNotEquals(WHITE, map.bufferRGB(50, 50));
+        assertTrue(map.frame().isEmpty());
+    }
+
+    @Test
+    public void testTrailAndClear() {
+        // Test that a moving tracker leaves a trail and that clearing it erases the trail
+        TrackerMapCanvas map = canvas();
+        map.frame();
+        map.update(3, 39.8, 116.2);
+        map.update(3, 39.8, 116.6);
+        map.frame();
+        assertNotEquals(WHITE, map.bufferRGB(40, 20));
+        map.clear(3);
+        map.frame();
+        assertEquals(WHITE, map.bufferRGB(40, 20));
+        assertEquals(WHITE, map.bufferRGB(60, 20));
+    }
+
+    @Test
+    public void testManyRegionsAreMerged() {
+        // Test that a burst of fixes across the map is merged into a bounded number of regions
+        TrackerMapCanvas map = canvas();
+        map.frame();
+        for (int i = 0; i < 1000; i++) {
+            map.update(i, 39 + (i % 97) / 100.0, 116 + (i % 89) / 100.0);
+        }
+        List<Rectangle> dirty = map.frame();
+        assertTrue(dirty.size() <= 32);
+        assertNotEquals(WHITE, map.bufferRGB(50, 50));
+    }
+
+    @Test
+    public void testOverlappingTrailIsRedrawn() {
+        // Test that redrawing a region restores another tracker's trail passing through it
+        TrackerMapCanvas map = canvas();
+        map.frame();
+        map.update(0, 39.8, 116.2);
+        map.update(0, 39.8, 116.8);
+        map.frame();
+        assertNotEquals(WHITE, map.bufferRGB(50, 20));
+        map.update(1, 39.5, 116.5);
+        map.frame();
+        map.clear(1);
+        map.update(1, 39.8, 116.5);
+        map.clear(1);
+        map.frame();
+        assertNotEquals(WHITE, map.bufferRGB(50, 20));
+        assertEquals(WHITE, map.bufferRGB(50, 50));
+    }
+}
@@ -0,0 +1,83 @@
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The latest fix and history of each tracker, written by one thread and readable from any.
+ *
+ * Each tracker has a single writer, normally its stream listener; Sodium runs one
+ * transaction at a time, so a tracker's listener never runs concurrently with itself.
+ * After every update the writer publishes an immutable {@link Snapshot}, and readers such
+ * as the event dispatch thread just fetch the latest one. Readers never block the writer
+ * or each other, and never see a half-applied update.
+ */
+public class TrackerStore {
+
+    private final CompressedTrackHistory[] histories;       // Owned by each tracker's writer
+    private final AtomicReferenceArray<Snapshot> published;
+
+    /**
+     * Creates an empty store for the given number of trackers. Each tracker's history is
+     * only created once it is first updated or read.
+     */
+    public TrackerStore(int trackers){
+        this.histories = new CompressedTrackHistory[trackers];
+        this.published = new AtomicReferenceArray<Snapshot>(trackers);
+    }
+
+    /**
+     * Returns the number of trackers.
+     */
+    public int size(){
+        return this.histories.length;
+    }
+
+    /**
+     * Records a fix and publishes the tracker's new snapshot. Only the tracker's writer may
+     * call this; different trackers may be updated from different threads.
+     */
+    public void update(int tracker, GpsEvent ev){
+        CompressedTrackHistory history = this.histories[tracker];
+        if (history == null) {
+            history = this.histories[tracker] = new CompressedTrackHistory(AbstractGpsSource.trackerName(tracker));
+        }
+        history.add(ev);
+        this.published.set(tracker, new Snapshot(history.snapshot(), ev));
+    }
+
+    /**
+     * Returns the latest published state of a tracker without blocking.
+     */
+    public Snapshot snapshot(int tracker){
+        Snapshot s = this.published.get(tracker);
+        if (s == null) {
+            // Not updated yet; if the writer publishes first its snapshot wins
+            this.published.compareAndSet(tracker, null, new Snapshot(new CompressedTrackHistory(AbstractGpsSource.trackerName(tracker)), null));
+            s = this.published.get(tracker);
+        }
+        return s;
+    }
+
+    /**
+     * The state of one tracker as of one update.
+     */
+    public static final class Snapshot {
+
+        public final String name;
+        public final int count;                         // Fixes recorded so far
+        public final double latitude;                   // The latest fix, or 0 before the first
+        public final double longitude;
+        public final double altitude;
+        public final long time;
+        public final CompressedTrackHistory history;    // Every fix recorded so far
+
+        Snapshot(CompressedTrackHistory history, GpsEvent latest){
+            this.name = history.getName();
+            this.count = history.size();
+            this.history = history;
+            // GpsEvent fields are mutable, so keep copies
+            this.latitude = latest == null ? 0 : latest.latitude;
+            this.longitude = latest == null ? 0 : latest.longitude;
+            this.altitude = latest == null ? 0 : latest.altitude;
+            this.time = latest == null ? 0 : latest.time;
+        }
+    }
+}
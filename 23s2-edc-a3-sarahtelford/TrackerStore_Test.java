@@ -0,0 +1,134 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class TrackerStore_Test {
+
+    private static final double LAT_LON_EPS = 1e-7;
+
+    // The i-th fix of a tracker, so readers can check any point they see
+    private static double lat(int tracker, int i) {
+        return 39.9 + tracker * 1e-3 + i * 1e-6;
+    }
+
+    private static double lon(int tracker, int i) {
+        return 116.3 - i * 1e-6;
+    }
+
+    @Test
+    public void testSnapshotsAreIsolated() {
+        // Test that snapshots do not change as the history grows, and appending to one leaves the history alone
+        CompressedTrackHistory history = new CompressedTrackHistory("Tracker0");
+        for (int i = 0; i < 200; i++) {
+            history.add(lat(0, i), lon(0, i), i);
+        }
+        CompressedTrackHistory snapshot = history.snapshot();
+        for (int i = 200; i < 1000; i++) {
+            history.add(lat(0, i), lon(0, i), i);
+        }
+        assertEquals(200, snapshot.size());
+        assertEquals(lat(0, 199), snapshot.get(199).latitude, LAT_LON_EPS);
+
+        snapshot.add(0, 0, 0);
+        assertEquals(201, snapshot.size());
+        assertEquals(0, snapshot.get(200).latitude, LAT_LON_EPS);
+        assertEquals(lat(0, 200), history.get(200).latitude, LAT_LON_EPS);
+        assertEquals(1000, history.size());
+    }
+
+    @Test
+    public void testUpdatePublishesLatestFix() {
+        // Test that a snapshot reflects every update before it and copies the latest fix
+        TrackerStore store = new TrackerStore(2);
+        assertEquals(0, store.snapshot(1).count);
+        assertEquals("Tracker1", store.snapshot(1).name);
+        GpsEvent ev = new GpsEvent("Tracker1", 39.9, 116.3, 50, 1234);
+        store.update(1, ev);
+        ev.latitude = 0;
+        TrackerStore.Snapshot s = store.snapshot(1);
+        assertEquals(1, s.count);
+        assertEquals(39.9, s.latitude, 0);
+        assertEquals(1234, s.time);
+        assertEquals(1, s.history.size());
+        assertEquals(0, store.snapshot(0).count);
+        assertSame(store.snapshot(0), store.snapshot(0));
+    }
+
+    @Test
+    public void testConcurrentWritersAndReaders() throws Exception {
+        // Test that readers racing many single-writer trackers only ever see complete,
+        // consistent states that move forward
+        final int trackers = 32;
+        final int updates = 5000;
+        final int readers = 4;
+        TrackerStore store = new TrackerStore(trackers);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<Thread>();
+
+        for (int r = 0; r < readers; r++) {
+            final Random random = new Random(r);
+            threads.add(new Thread(() -> {
+                int[] seen = new int[trackers];
+                try {
+                    start.await();
+                    while (!done.get()) {
+                        int t = random.nextInt(trackers);
+                        TrackerStore.Snapshot s = store.snapshot(t);
+                        assertTrue(s.count >= seen[t]);
+                        seen[t] = s.count;
+                        assertEquals(s.count, s.history.size());
+                        if (s.count > 0) {
+                            int last = s.count - 1;
+                            assertEquals(lat(t, last), s.latitude, 0);
+                            assertEquals(lat(t, last), s.history.get(last).latitude, LAT_LON_EPS);
+                            int i = random.nextInt(s.count);
+                            assertEquals(lon(t, i), s.history.get(i).longitude, LAT_LON_EPS);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+        List<Thread> writers = new ArrayList<Thread>();
+        for (int w = 0; w < trackers; w++) {
+            final int t = w;
+            writers.add(new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < updates; i++) {
+                        store.update(t, new GpsEvent("Tracker"+t, lat(t, i), lon(t, i), i, i));
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+        threads.addAll(writers);
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        done.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        for (int t = 0; t < trackers; t++) {
+            assertEquals(updates, store.snapshot(t).count);
+        }
+    }
+}
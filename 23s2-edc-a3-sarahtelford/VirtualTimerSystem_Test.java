@@ -0,0 +1,76 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import nz.sodium.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class VirtualTimerSystem_Test {
+
+    private static List<String> replay(long millis) throws Exception {
+        VirtualTimerSystem timers = new VirtualTimerSystem(0);
+        FileGpsSource source = new FileGpsSource("gps.dat", timers);
+        source.open();
+        List<String> events = new ArrayList<>();
+        Listener l = source.getMergedStream().listen(ev -> events.add(ev.time+" "+ev));
+        timers.advanceTo(millis);
+        source.close();
+        l.unlisten();
+        return events;
+    }
+
+    @Test
+    public void testReplayIsDeterministic() throws Exception {
+        // Test that two virtual replays of a day of gps.dat produce identical event sequences
+        long start = System.nanoTime();
+        List<String> first = replay(24L * 60 * 60 * 1000);
+        List<String> second = replay(24L * 60 * 60 * 1000);
+        assertTrue(first.size() > 1000);
+        assertEquals(first, second);
+        // A day of playback should take nowhere near a day
+        assertTrue(System.nanoTime() - start < 60_000_000_000L);
+    }
+
+    @Test
+    public void testReplayFollowsTraceDelays() throws Exception {
+        // Test that the first events fire one second in, then at the recorded delays
+        List<String> events = replay(3000);
+        assertTrue(events.get(0).startsWith("1000 Tracker"));
+        for (String ev : events) {
+            long t = Long.parseLong(ev.substring(0, ev.indexOf(' ')));
+            assertTrue(t >= 1000 && t <= 3000);
+        }
+    }
+
+    @Test
+    public void testStaleAfter() {
+        // Test that the staleness timeout restarts on each event and fires once the stream is quiet
+        VirtualTimerSystem timers = new VirtualTimerSystem(0);
+        StreamSink<String> s = new StreamSink<String>();
+        List<Long> stale = new ArrayList<>();
+        Listener l = GpsTimers.staleAfter(timers, s, 3000).listen(stale::add);
+
+        timers.advanceTo(1000);
+        s.send("a");
+        timers.advanceTo(3500);
+        s.send("b");
+        timers.advanceTo(6000);
+        assertTrue(stale.isEmpty());
+        timers.advanceTo(7000);
+        l.unlisten();
+        assertEquals(List.of(6500L), stale);
+    }
+
+    @Test
+    public void testPeriodic() {
+        // Test that periodic ticks land exactly on multiples of the period
+        VirtualTimerSystem timers = new VirtualTimerSystem(100);
+        List<Long> ticks = new ArrayList<>();
+        Listener l = GpsTimers.periodic(timers, 250).listen(ticks::add);
+        timers.advanceBy(1000);
+        l.unlisten();
+        assertEquals(List.of(350L, 600L, 850L, 1100L), ticks);
+        assertEquals(1100L, timers.now());
+    }
+}